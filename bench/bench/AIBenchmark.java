@@ -0,0 +1,63 @@
+package bench;
+
+import game.AI;
+import game.Field;
+import game.Mark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per AI move ({@link AI#getMoveByDifficulty(Field, Mark, int)}) for every difficulty.
+ * The transposition table is cleared before every searched move, so repeated calls on the
+ * same position do not measure table hits only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AIBenchmark {
+
+    @Param({"3x3", "7x7"})
+    public String board;
+
+    @Param({"empty", "midgame", "endgame"})
+    public String position;
+
+    @Param({"1", "2", "3"})
+    public int difficulty;
+
+    private Field field;
+    private Mark markAI;
+
+    @Setup
+    public void setup() {
+        field = Positions.create(board, position);
+        markAI = Positions.toMove(field);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        if (difficulty > 1) {
+            AI.getTranspositionTable().clear();
+        }
+    }
+
+    @Benchmark
+    public int[] getMoveByDifficulty() {
+        return AI.getMoveByDifficulty(field, markAI, difficulty);
+    }
+}
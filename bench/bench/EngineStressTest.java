@@ -0,0 +1,139 @@
+package bench;
+
+import game.AI;
+import game.Engine;
+import game.Field;
+import game.Mark;
+import game.Position;
+import game.SearchEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress test for the {@link Engine} API: many threads play games at the same time against one
+ * shared engine per difficulty and against the static {@link AI} methods.
+ * Every move is checked: the position passed in must not change, the move must be legal and on the
+ * classic board "Hard" must keep the game-theoretic value of the position (so it never loses).
+ * Exits with status 1 if any check fails.
+ *
+ * Usage: {@code EngineStressTest [threads] [games per thread]}
+ */
+public final class EngineStressTest {
+
+    private static final int[][] BOARDS = { {3, 3, 3}, {4, 4, 4}, {7, 7, 4} };
+
+    /**
+     * Game-theoretic value of every classic position for the side to move: 1 win, 0 draw, -1 loss.
+     * Filled before the threads start and only read afterwards.
+     */
+    private static final Map<Position, Integer> values = new HashMap<>();
+
+    private static final AtomicLong moves = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(8, 4 * cores);
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        solve(Position.empty(3, 3, 3));
+        Engine[] engines = {new SearchEngine(1), new SearchEngine(2), new SearchEngine(3)};
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            boolean useStaticAI = i % 4 == 3;
+            results.add(pool.submit(() -> play(engines, games, useStaticAI)));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+        System.out.printf("%d threads, %,d moves in %.1f s, %d failures%n", threads, moves.get(),
+                (System.nanoTime() - start) / 1e9, failures.get());
+        System.exit(failures.get() == 0 ? 0 : 1);
+    }
+
+    /**
+     * Plays random pairings of difficulties on random boards.
+     * @param useStaticAI true to move with {@link AI#getMoveByDifficulty(Field, Mark, int)} on a private field.
+     */
+    private static void play(Engine[] engines, int games, boolean useStaticAI) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int game = 0; game < games; game++) {
+            // The large board is slow, so it is played less often.
+            int[] board = BOARDS[random.nextInt(10) == 0 ? 2 : random.nextInt(2)];
+            int[] difficulty = {1 + random.nextInt(3), 1 + random.nextInt(3)};
+            Position position = Position.empty(board[0], board[1], board[2]);
+            Field field = position.toField();
+            while (!field.isGameOver()) {
+                Mark mark = position.getSideToMove();
+                int level = difficulty[mark == Mark.X ? 0 : 1];
+                int[] move;
+                if (useStaticAI) {
+                    move = AI.getMoveByDifficulty(field, mark, level);
+                    check(Position.of(field).equals(position), "static AI changed the field", position);
+                } else {
+                    move = engines[level - 1].move(position);
+                    check(position.toField().toString().equals(field.toString()), "position changed", position);
+                }
+                moves.incrementAndGet();
+                boolean legal = move[0] >= 0 && move[0] < board[0] && move[1] >= 0 && move[1] < board[1]
+                        && position.getMark(move[0], move[1]) == Mark.BLANK;
+                if (!check(legal, "illegal move " + move[0] + " " + move[1], position)) {
+                    break;
+                }
+                Position next = position.play(move[0], move[1]);
+                if (level == 3 && board[0] == 3) {
+                    check(-values.get(next) == values.get(position), "Hard move gave away the game", position);
+                }
+                position = next;
+                field.setMark(move[0], move[1], mark);
+            }
+        }
+    }
+
+    private static boolean check(boolean condition, String message, Position position) {
+        if (!condition) {
+            failures.incrementAndGet();
+            System.out.println("FAILED: " + message + " in\n" + position);
+        }
+        return condition;
+    }
+
+    /**
+     * Fills {@link #values} by a plain negamax from the given position.
+     * @return value for the side to move.
+     */
+    private static int solve(Position position) {
+        Integer known = values.get(position);
+        if (known != null) {
+            return known;
+        }
+        Field field = position.toField();
+        int value;
+        if (field.isGameOver()) {
+            // The previous move won or filled the board.
+            value = field.getWinner() == Mark.BLANK ? 0 : -1;
+        } else {
+            value = -1;
+            for (int row = 0; row < 3; row++) {
+                for (int column = 0; column < 3; column++) {
+                    if (position.getMark(row, column) == Mark.BLANK) {
+                        value = Math.max(value, -solve(position.play(row, column)));
+                    }
+                }
+            }
+        }
+        values.put(position, value);
+        return value;
+    }
+}
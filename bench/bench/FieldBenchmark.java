@@ -0,0 +1,72 @@
+package bench;
+
+import game.Field;
+import game.Mark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of {@link Field} that the search calls at every node.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FieldBenchmark {
+
+    @Param({"3x3", "7x7"})
+    public String board;
+
+    @Param({"empty", "midgame", "endgame"})
+    public String position;
+
+    private Field field;
+    private Mark mark;
+    private int freeCell;
+
+    @Setup
+    public void setup() {
+        field = Positions.create(board, position);
+        mark = Positions.toMove(field);
+        freeCell = field.nextFreeCell(0);
+    }
+
+    @Benchmark
+    public boolean hasWon() {
+        return field.hasWon(Mark.X) | field.hasWon(Mark.O);
+    }
+
+    @Benchmark
+    public String getGameState() {
+        return field.getGameState();
+    }
+
+    @Benchmark
+    public int numOfMarks() {
+        return field.numOfMarks();
+    }
+
+    /**
+     * Make and unmake a move, as the search does for every node.
+     */
+    @Benchmark
+    public boolean setMarkAndUndo() {
+        field.setMark(freeCell, mark);
+        boolean over = field.isGameOver();
+        field.setMark(freeCell, Mark.BLANK);
+        return over;
+    }
+}
@@ -0,0 +1,51 @@
+package bench;
+
+import game.MonteCarloEngine;
+import game.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for a {@link MonteCarloEngine} search with a fixed number of playouts, on all cores.
+ * Playouts per second = playouts / time per operation. Only the empty board is used, later positions
+ * often have a forced move that is played without a search.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MonteCarloBenchmark {
+
+    @Param({"3x3", "7x7"})
+    public String board;
+
+    @Param({"10000"})
+    public int playouts;
+
+    private Position start;
+    private MonteCarloEngine engine;
+
+    @Setup
+    public void setup() {
+        start = Position.of(Positions.create(board, "empty"));
+        engine = MonteCarloEngine.withPlayouts(playouts);
+    }
+
+    @Benchmark
+    public MonteCarloEngine.Result search() {
+        return engine.search(start);
+    }
+}
@@ -0,0 +1,44 @@
+package bench;
+
+import game.Field;
+import game.Mark;
+
+import java.util.Random;
+
+/**
+ * Reproducible benchmark positions.
+ */
+final class Positions {
+
+    private Positions() {
+    }
+
+    /**
+     * @param board "3x3" (3 in a row) or "7x7" (4 in a row).
+     * @param position "empty", "midgame" (a third of the cells taken) or "endgame" (7 of 9 cells taken).
+     * @return a position that is not game over, with the next mark to play on turn.
+     */
+    static Field create(String board, String position) {
+        Field field = "7x7".equals(board) ? new Field(7, 7, 4) : new Field();
+        int marks = "midgame".equals(position) ? field.getCells() / 3 :
+                "endgame".equals(position) ? field.getCells() * 7 / 9 : 0;
+        Random random = new Random(42);
+        while (field.numOfMarks() < marks) {
+            Mark mark = field.isXsTurn() ? Mark.X : Mark.O;
+            int cell = random.nextInt(field.getCells());
+            if (field.getMark(cell) != Mark.BLANK) {
+                continue;
+            }
+            field.setMark(cell, mark);
+            // Skip moves that end the game, the position has to stay playable.
+            if (field.isGameOver()) {
+                field.setMark(cell, Mark.BLANK);
+            }
+        }
+        return field;
+    }
+
+    static Mark toMove(Field field) {
+        return field.isXsTurn() ? Mark.X : Mark.O;
+    }
+}
@@ -0,0 +1,99 @@
+package bench;
+
+import game.QubicBoard;
+import game.QubicSearch;
+import game.TranspositionTable;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link QubicSearch}, the stress case of the engines: 64 moves per node and 76 lines
+ * per evaluation. {@code search} reports the searched nodes per second as its {@code nodes} counter,
+ * {@code playAndUndo} the win test of {@link QubicBoard} for every move of a position.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QubicBenchmark {
+
+    @Param({"empty", "midgame"})
+    public String position;
+
+    @Param({"4"})
+    public int depth;
+
+    private QubicBoard board;
+    private final TranspositionTable table = new TranspositionTable(1 << 18);
+
+    /**
+     * Searched nodes, summed over the iteration and reported per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        board = new QubicBoard();
+        if (position.equals("midgame")) {
+            // The same 12 random moves every run, replayed until the position isn't decided yet.
+            for (long seed = 0; board.numOfMarks() < 12; seed++) {
+                board = new QubicBoard();
+                Random random = new Random(seed);
+                while (board.numOfMarks() < 12 && !board.isGameOver()) {
+                    board.play(QubicSearch.move(board, 1, 0, random));
+                }
+                if (board.isGameOver()) {
+                    board = new QubicBoard();
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        table.clear();
+    }
+
+    @Benchmark
+    public int search(Nodes nodes) {
+        QubicSearch search = new QubicSearch(board, TimeUnit.HOURS.toMillis(1), table);
+        int move = search.run(depth);
+        nodes.nodes += search.getNodes();
+        return move;
+    }
+
+    /**
+     * Make and unmake every free cell, as the search does at every node.
+     */
+    @Benchmark
+    public boolean playAndUndo() {
+        boolean over = false;
+        for (long free = board.getFreeCells(); free != 0; free &= free - 1) {
+            int cell = Long.numberOfTrailingZeros(free);
+            board.play(cell);
+            over |= board.isGameOver();
+            board.undo(cell);
+        }
+        return over;
+    }
+}
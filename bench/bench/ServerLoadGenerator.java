@@ -0,0 +1,181 @@
+package bench;
+
+import server.GameServer;
+import server.VirtualThreads;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load generator for the {@link GameServer}.
+ * Opens many sessions at once, every session plays random moves against the AI until the time is up.
+ * Reports the moves per second over all sessions and the latency of a move (from sending MOVE until
+ * the answer of the server, including the AI move).
+ *
+ * Usage: {@code ServerLoadGenerator [key=value ...]} with the keys
+ * {@code port} (default 0: start a server in this JVM), {@code sessions} (1000), {@code seconds} (30),
+ * {@code board} (3x3x3 = rows x columns x winLength) and {@code difficulty} (3).
+ */
+public final class ServerLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        int port = 0;
+        int sessions = 1000;
+        int seconds = 30;
+        String board = "3x3x3";
+        int difficulty = 3;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            switch (option[0]) {
+                case "port": port = Integer.parseInt(option[1]); break;
+                case "sessions": sessions = Integer.parseInt(option[1]); break;
+                case "seconds": seconds = Integer.parseInt(option[1]); break;
+                case "board": board = option[1]; break;
+                case "difficulty": difficulty = Integer.parseInt(option[1]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        String[] size = board.split("x");
+        String newGame = "NEW " + size[0] + " " + size[1] + " " + size[2] + " O " + difficulty;
+        int cells = Integer.parseInt(size[0]) * Integer.parseInt(size[1]);
+        int columns = Integer.parseInt(size[1]);
+
+        GameServer server = null;
+        if (port == 0) {
+            server = new GameServer(0);
+            port = server.getPort();
+            GameServer embedded = server;
+            Thread acceptor = new Thread(embedded::serve, "Server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        System.out.printf("%d sessions, %d s, board %s, difficulty %d, %s%n", sessions, seconds, board, difficulty,
+                VirtualThreads.isAvailable() ? "virtual threads" : "platform threads");
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        int serverPort = port;
+        List<Future<long[]>> results = new ArrayList<>();
+        ExecutorService clients = VirtualThreads.newPerTaskExecutor("Client");
+        for (int i = 0; i < sessions; i++) {
+            results.add(clients.submit(() -> play(serverPort, newGame, cells, columns, end)));
+        }
+        long[][] latencies = new long[sessions][];
+        int moves = 0;
+        for (int i = 0; i < sessions; i++) {
+            latencies[i] = results.get(i).get();
+            moves += latencies[i].length;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+        if (server != null) {
+            server.close();
+        }
+
+        long[] all = new long[moves];
+        int position = 0;
+        for (long[] session : latencies) {
+            System.arraycopy(session, 0, all, position, session.length);
+            position += session.length;
+        }
+        Arrays.sort(all);
+        System.out.printf("%,d moves in %.1f s: %,.0f moves/s%n", moves, elapsed, moves / elapsed);
+        if (moves > 0) {
+            System.out.printf("latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", percentile(all, 0.50) / 1e6,
+                    percentile(all, 0.99) / 1e6, all[moves - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Plays games in one session until the end time.
+     * @return latency of every move in nanoseconds.
+     */
+    private static long[] play(int port, String newGame, int cells, int columns, long end) {
+        long[] latencies = new long[256];
+        int moves = 0;
+        Random random = ThreadLocalRandom.current();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+            expect(in.readLine(), "HELLO");
+            boolean[] taken = new boolean[cells];
+            while (System.nanoTime() < end) {
+                Arrays.fill(taken, false);
+                send(out, newGame);
+                expect(in.readLine(), "OK");
+                boolean running = readAnswer(in, taken, columns);
+                while (running && System.nanoTime() < end) {
+                    int cell;
+                    do {
+                        cell = random.nextInt(cells);
+                    } while (taken[cell]);
+                    taken[cell] = true;
+                    long sent = System.nanoTime();
+                    send(out, "MOVE " + (cell / columns + 1) + " " + (cell % columns + 1));
+                    running = readAnswer(in, taken, columns);
+                    if (moves == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, moves * 2);
+                    }
+                    latencies[moves++] = System.nanoTime() - sent;
+                }
+            }
+            send(out, "QUIT");
+            expect(in.readLine(), "BYE");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Arrays.copyOf(latencies, moves);
+    }
+
+    /**
+     * Reads the answer to NEW or MOVE.
+     * @return true if the game goes on.
+     */
+    private static boolean readAnswer(BufferedReader in, boolean[] taken, int columns) throws IOException {
+        while (true) {
+            String line = in.readLine();
+            expect(line, "");
+            if (line.startsWith("AI ")) {
+                String[] words = line.split(" ");
+                taken[(Integer.parseInt(words[1]) - 1) * columns + Integer.parseInt(words[2]) - 1] = true;
+            } else if (line.startsWith("TURN")) {
+                return true;
+            } else if (line.startsWith("OVER")) {
+                return false;
+            } else {
+                throw new IOException("Unexpected answer: " + line);
+            }
+        }
+    }
+
+    private static void send(BufferedWriter out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    private static void expect(String line, String prefix) throws IOException {
+        if (line == null || !line.startsWith(prefix)) {
+            throw new IOException("Expected " + (prefix.isEmpty() ? "an answer" : prefix) + " but got " + line);
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+}
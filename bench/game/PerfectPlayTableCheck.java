@@ -0,0 +1,144 @@
+package game;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static game.Mark.*;
+
+/**
+ * Checks every reachable position of the {@link PerfectPlayTable} against a plain solver that keeps the
+ * outcome and the distance to it apart: the score has to be 10 - d for a win in d plies, d - 10 for a
+ * loss and 0 for a draw, the best moves have to be exactly the moves with that score, and a move that
+ * wins at once has to be among them. Lives in package {@code game}, the table is package-private.
+ * Exits with status 1 if any check fails.
+ *
+ * Usage: {@code PerfectPlayTableCheck}
+ */
+public final class PerfectPlayTableCheck {
+
+    /**
+     * Score of every solved position by {@link PerfectPlayTable#index(int, int)}.
+     */
+    private static final Map<Integer, Integer> scores = new HashMap<>();
+
+    private static final Set<Integer> checked = new HashSet<>();
+
+    private static int positions;
+    private static int immediateWins;
+    private static int failures;
+
+    public static void main(String[] args) {
+        check(new Field());
+        System.out.printf("%d positions, %d with an immediate win, %d failures%n", positions, immediateWins,
+                failures);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Checks the position and all positions reachable from it, once each.
+     */
+    private static void check(Field field) {
+        int index = PerfectPlayTable.index((int) field.getBits(X), (int) field.getBits(O));
+        if (!checked.add(index)) {
+            return;
+        }
+        int expected = solve(field);
+        positions++;
+        if (PerfectPlayTable.score(field) != expected) {
+            fail("score " + PerfectPlayTable.score(field) + " instead of " + expected, field);
+        }
+        if (field.isGameOver()) {
+            if (PerfectPlayTable.bestMoves(field) != 0) {
+                fail("best moves after the end of the game", field);
+            }
+            return;
+        }
+        Mark mark = field.isXsTurn() ? X : O;
+        int best = 0;
+        int wins = 0;
+        for (int cell = field.nextFreeCell(0); cell >= 0; cell = field.nextFreeCell(cell + 1)) {
+            field.setMark(cell, mark);
+            if (field.hasWon(mark)) {
+                wins |= 1 << cell;
+            }
+            // Score of the position after the move, for the opponent.
+            int child = solve(field);
+            if (moveScore(child) == expected) {
+                best |= 1 << cell;
+            }
+            check(field);
+            field.setMark(cell, BLANK);
+        }
+        if (PerfectPlayTable.bestMoves(field) != best) {
+            fail("best moves " + Integer.toBinaryString(PerfectPlayTable.bestMoves(field)) + " instead of "
+                    + Integer.toBinaryString(best), field);
+        }
+        if (wins != 0) {
+            immediateWins++;
+            if ((PerfectPlayTable.bestMoves(field) & wins) != wins) {
+                fail("a move that wins at once isn't a best move", field);
+            }
+        }
+    }
+
+    /**
+     * Negamax on the outcome (1 win, 0 draw, -1 loss) and its distance in plies, without the score
+     * arithmetic of the table: the fastest win and the slowest loss are best.
+     * @return score for the side to move, 10 - d for a win in d plies and d - 10 for a loss.
+     */
+    private static int solve(Field field) {
+        int index = PerfectPlayTable.index((int) field.getBits(X), (int) field.getBits(O));
+        Integer known = scores.get(index);
+        if (known != null) {
+            return known;
+        }
+        int outcome;
+        int plies = 0;
+        if (field.isGameOver()) {
+            // The previous move won or filled the board.
+            outcome = field.getWinner() == BLANK ? 0 : -1;
+        } else {
+            Mark mark = field.isXsTurn() ? X : O;
+            outcome = -2;
+            for (int cell = field.nextFreeCell(0); cell >= 0; cell = field.nextFreeCell(cell + 1)) {
+                field.setMark(cell, mark);
+                int child = solve(field);
+                field.setMark(cell, BLANK);
+                int childOutcome = -Integer.signum(child);
+                int childPlies = plies(child);
+                boolean better = childOutcome > outcome
+                        || childOutcome == outcome && (outcome > 0 ? childPlies < plies : childPlies > plies);
+                if (better) {
+                    outcome = childOutcome;
+                    plies = childPlies;
+                }
+            }
+        }
+        int score = outcome > 0 ? 10 - plies : outcome < 0 ? plies - 10 : 0;
+        scores.put(index, score);
+        return score;
+    }
+
+    /**
+     * @param child score of the position after the move, for the opponent.
+     * @return plies from before the move to the end of the game, if it isn't a draw.
+     */
+    private static int plies(int child) {
+        return 10 - Math.abs(child) + 1;
+    }
+
+    /**
+     * @param child score of the position after the move, for the opponent.
+     * @return score of the move for the side that made it.
+     */
+    private static int moveScore(int child) {
+        return child < 0 ? 10 - plies(child) : child > 0 ? plies(child) - 10 : 0;
+    }
+
+    private static void fail(String message, Field field) {
+        failures++;
+        System.out.println("FAILED: " + message + " in\n" + field);
+    }
+}
@@ -0,0 +1,171 @@
+package archive;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed stream of finished games, e.g. a training set made by {@link SelfPlay}.
+ * The file is gzip: the {@link GameRecord}s are encoded back to back like in the {@link GameArchive}, so
+ * every record holds the board, the moves in order and the result, and each position of a game is
+ * labelled by replaying it ({@link GameRecord#replay(int)}).
+ *
+ * Writers add games to a {@link Batch} of their own. A full batch is compressed on the writer's thread
+ * into a gzip member of its own and appended to the file, concatenated members are still one gzip
+ * stream. Compression runs on all writers at once and the memory is one batch per writer, however
+ * many games are written.
+ */
+public final class Dataset implements Closeable {
+
+    /**
+     * Uncompressed bytes of a batch, a few thousand games on the small boards.
+     */
+    static final int BATCH_BYTES = 1 << 16;
+
+    private final OutputStream out;
+    private long games;
+
+    /**
+     * Creates the file, an existing file is replaced.
+     */
+    public Dataset(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        out = Files.newOutputStream(file);
+    }
+
+    /**
+     * @return a new batch for one writer thread.
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Appends a compressed batch.
+     */
+    private synchronized void append(byte[] compressed, int length, int batchGames) throws IOException {
+        out.write(compressed, 0, length);
+        games += batchGames;
+    }
+
+    /**
+     * @return number of games written to the file so far.
+     */
+    public synchronized long getGames() {
+        return games;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Reads all games of a file.
+     * @param consumer called for every game in the order of the file.
+     * @return number of games.
+     */
+    public static long read(Path file, Consumer<GameRecord> consumer) throws IOException {
+        long games = 0;
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BATCH_BYTES), BATCH_BYTES))) {
+            byte[] record = new byte[GameRecord.encodedLength(255, 255, 256)];
+            while (readHeader(in, record)) {
+                int rows = record[0] & 0xFF;
+                int columns = record[1] & 0xFF;
+                int moveCount = (record[5] & 0xFF) << 8 | record[6] & 0xFF;
+                int length = GameRecord.encodedLength(rows, columns, moveCount);
+                in.readFully(record, GameRecord.HEADER_BYTES, length - GameRecord.HEADER_BYTES);
+                consumer.accept(GameRecord.decode(record));
+                games++;
+            }
+        }
+        return games;
+    }
+
+    /**
+     * @return false at the end of the file.
+     */
+    private static boolean readHeader(DataInputStream in, byte[] record) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        record[0] = (byte) first;
+        try {
+            in.readFully(record, 1, GameRecord.HEADER_BYTES - 1);
+        } catch (EOFException e) {
+            throw new IOException("Truncated record at the end of the dataset", e);
+        }
+        return true;
+    }
+
+    /**
+     * Games of one writer that are not in the file yet. Not thread-safe, every writer has its own.
+     */
+    public final class Batch {
+
+        private final byte[] buffer = new byte[BATCH_BYTES];
+        private final Compressed compressed = new Compressed();
+        private int length;
+        private int games;
+
+        private Batch() {
+        }
+
+        /**
+         * Adds a game, the batch is written to the file once it is full.
+         */
+        public void add(GameRecord record) throws IOException {
+            int recordLength = record.encodedLength();
+            if (length + recordLength > buffer.length) {
+                flush();
+            }
+            record.encode(buffer, length);
+            length += recordLength;
+            games++;
+        }
+
+        /**
+         * Writes the games of the batch to the file, called once more after the last game.
+         */
+        public void flush() throws IOException {
+            if (games == 0) {
+                return;
+            }
+            compressed.reset();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, BATCH_BYTES / 4)) {
+                gzip.write(buffer, 0, length);
+            }
+            append(compressed.bytes(), compressed.size(), games);
+            length = 0;
+            games = 0;
+        }
+    }
+
+    /**
+     * Gives access to its buffer, so a compressed batch is written without a copy.
+     */
+    private static final class Compressed extends ByteArrayOutputStream {
+
+        Compressed() {
+            super(BATCH_BYTES / 4);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
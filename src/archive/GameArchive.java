@@ -0,0 +1,261 @@
+package archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only archive of finished games.
+ * The records ({@link GameRecord}) are stored back to back in {@code <name>.dat}. For every record
+ * {@code <name>.idx} holds an entry of fixed width:
+ * <pre>
+ * long  offset of the record in the data file
+ * int   length of the record
+ * byte  flags of the record (mode, AIs mark, result)
+ * byte  difficulty
+ * short moveCount
+ * </pre>
+ * The index is read through a memory mapping, so game n is found without reading any other game and
+ * the statistics over millions of games only touch the index.
+ *
+ * A record is written before its index entry, so an interrupted append leaves at most some unused
+ * bytes at the end of the data file, which are cut off the next time the archive is opened.
+ */
+public final class GameArchive implements Closeable {
+
+    static final int ENTRY_BYTES = 16;
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private long games;
+    private long dataEnd;
+
+    /**
+     * Read-only mapping of the first {@link #mappedGames} index entries. Remapped once a game behind
+     * it is requested.
+     */
+    private MappedByteBuffer mappedIndex;
+    private long mappedGames = -1;
+
+    /**
+     * Opens the archive, the files are created if they don't exist.
+     * @param base path of the archive without extension, e.g. {@code games} for {@code games.dat} and {@code games.idx}.
+     */
+    public GameArchive(Path base) throws IOException {
+        Path parent = base.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        data = FileChannel.open(Paths.get(base + ".dat"), CREATE, READ, WRITE);
+        index = FileChannel.open(Paths.get(base + ".idx"), CREATE, READ, WRITE);
+        recover();
+    }
+
+    /**
+     * Drops a partially written index entry and data that has no index entry.
+     */
+    private void recover() throws IOException {
+        games = index.size() / ENTRY_BYTES;
+        index.truncate(games * ENTRY_BYTES);
+        dataEnd = 0;
+        if (games > 0) {
+            ByteBuffer last = ByteBuffer.allocate(ENTRY_BYTES);
+            readFully(index, last, (games - 1) * ENTRY_BYTES);
+            dataEnd = last.getLong(0) + last.getInt(8);
+        }
+        data.truncate(dataEnd);
+    }
+
+    /**
+     * Appends a game.
+     * @return number of the game, used by {@link #read(long)}.
+     */
+    public synchronized long append(GameRecord record) throws IOException {
+        int length = record.encodedLength();
+        byte[] bytes = new byte[length];
+        record.encode(bytes, 0);
+        writeFully(data, ByteBuffer.wrap(bytes), dataEnd);
+
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+        entry.putLong(dataEnd).putInt(length).put((byte) record.flags()).put((byte) record.getDifficulty())
+                .putShort((short) record.getMoveCount()).flip();
+        writeFully(index, entry, games * ENTRY_BYTES);
+
+        dataEnd += length;
+        return games++;
+    }
+
+    /**
+     * @return number of games in the archive.
+     */
+    public synchronized long size() {
+        return games;
+    }
+
+    /**
+     * Reads a single game.
+     * @param number number of the game, from 0 to {@link #size()} - 1.
+     */
+    public synchronized GameRecord read(long number) throws IOException {
+        if (number < 0 || number >= games) {
+            throw new IndexOutOfBoundsException("Game " + number + " of " + games);
+        }
+        MappedByteBuffer entries = mapIndex();
+        int entry = (int) (number * ENTRY_BYTES);
+        long offset = entries.getLong(entry);
+        int length = entries.getInt(entry + 8);
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(data, bytes, offset);
+        return GameRecord.decode(bytes.array());
+    }
+
+    /**
+     * Counts the results of all games. Only the index is read.
+     */
+    public synchronized Stats stats() throws IOException {
+        MappedByteBuffer entries = mapIndex();
+        Stats stats = new Stats();
+        for (int entry = 0; entry < games * ENTRY_BYTES; entry += ENTRY_BYTES) {
+            stats.add(entries.get(entry + 12) & 0xFF);
+        }
+        return stats;
+    }
+
+    private MappedByteBuffer mapIndex() throws IOException {
+        if (mappedGames != games) {
+            long bytes = games * ENTRY_BYTES;
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException("Index too large to be mapped: " + bytes + " bytes");
+            }
+            mappedIndex = index.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            mappedGames = games;
+        }
+        return mappedIndex;
+    }
+
+    /**
+     * Forces the written games to the storage device.
+     */
+    public synchronized void sync() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        data.close();
+        index.close();
+        mappedIndex = null;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of archive at " + position);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Results of the games in an archive.
+     */
+    public static final class Stats {
+
+        private long games;
+        private final long[] results = new long[4];
+        private long aiWins;
+        private long aiLosses;
+        private long pveGames;
+
+        private void add(int flags) {
+            int result = flags >>> GameRecord.RESULT_SHIFT & 3;
+            games++;
+            results[result]++;
+            if ((flags & GameRecord.FLAG_PVP) == 0) {
+                pveGames++;
+                int aiWon = (flags & GameRecord.FLAG_AI_X) != 0 ? GameRecord.X_WON : GameRecord.O_WON;
+                if (result == aiWon) {
+                    aiWins++;
+                } else if (result == GameRecord.X_WON || result == GameRecord.O_WON) {
+                    aiLosses++;
+                }
+            }
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getXWins() {
+            return results[GameRecord.X_WON];
+        }
+
+        public long getOWins() {
+            return results[GameRecord.O_WON];
+        }
+
+        public long getDraws() {
+            return results[GameRecord.DRAW];
+        }
+
+        public long getUnfinished() {
+            return results[GameRecord.UNFINISHED];
+        }
+
+        public long getPveGames() {
+            return pveGames;
+        }
+
+        public long getAIWins() {
+            return aiWins;
+        }
+
+        public long getAILosses() {
+            return aiLosses;
+        }
+
+        @Override
+        public String toString() {
+            return "Games: " + games + ", X wins: " + getXWins() + ", O wins: " + getOWins() + ", draws: "
+                    + getDraws() + ", unfinished: " + getUnfinished() + "\nPvE games: " + pveGames
+                    + ", AI wins: " + aiWins + ", AI losses: " + aiLosses;
+        }
+    }
+
+    /**
+     * Prints the statistics of an archive or replays a single game.
+     * Usage: {@code GameArchive <archive> [stats | replay <number>]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: GameArchive <archive> [stats | replay <number>]");
+            return;
+        }
+        try (GameArchive archive = new GameArchive(Paths.get(args[0]))) {
+            if (args.length >= 3 && args[1].equals("replay")) {
+                GameRecord record = archive.read(Long.parseLong(args[2]));
+                System.out.println(record);
+                for (int move = 1; move <= record.getMoveCount(); move++) {
+                    System.out.print(record.replay(move));
+                }
+            } else {
+                System.out.println(archive.stats());
+            }
+        }
+    }
+}
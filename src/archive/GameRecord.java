@@ -0,0 +1,284 @@
+package archive;
+
+import game.Field;
+import game.Mark;
+
+import java.util.Arrays;
+
+import static game.Mark.*;
+
+/**
+ * One finished game: the board, how it was played and the sequence of moves.
+ *
+ * Binary layout in the archive (all values unsigned):
+ * <pre>
+ * byte  rows
+ * byte  columns
+ * byte  winLength
+ * byte  flags      bit 0: PvP, bit 1: AI plays X, bits 2-3: result (see {@link #getResult()}),
+ *                  bits 4-6: difficulty of the AI playing O in self-play, 0 otherwise
+ * byte  difficulty 0 in PvP, in self-play the difficulty of the AI playing X
+ * short moveCount
+ * moves            boards with up to 16 cells: one nibble per cell index, high nibble first,
+ *                  larger boards: one byte per cell index
+ * </pre>
+ * X always moves first, so the marks of the moves follow from their order.
+ */
+public final class GameRecord {
+
+    static final int HEADER_BYTES = 7;
+
+    /**
+     * Values of the result bits.
+     */
+    public static final int DRAW = 0;
+    public static final int X_WON = 1;
+    public static final int O_WON = 2;
+    public static final int UNFINISHED = 3;
+
+    static final int FLAG_PVP = 1;
+    static final int FLAG_AI_X = 1 << 1;
+    static final int RESULT_SHIFT = 2;
+    static final int OPPONENT_SHIFT = 4;
+
+    private final int rows;
+    private final int columns;
+    private final int winLength;
+    private final boolean pvp;
+    private final int difficulty;
+    private final int opponentDifficulty;
+    private final Mark markAI;
+    private final int result;
+    private final int[] moves;
+
+    /**
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param winLength number of marks in a row needed to win.
+     * @param pvp true if two players played against each other.
+     * @param difficulty AI difficulty, ignored in PvP.
+     * @param markAI AIs mark, ignored in PvP.
+     * @param result one of {@link #DRAW}, {@link #X_WON}, {@link #O_WON}, {@link #UNFINISHED}.
+     * @param moves cell indices ({@code row * columns + column}) in the order they were played.
+     */
+    public GameRecord(int rows, int columns, int winLength, boolean pvp, int difficulty, Mark markAI, int result,
+                      int[] moves) {
+        this(rows, columns, winLength, pvp, difficulty, 0, markAI, result, moves);
+    }
+
+    private GameRecord(int rows, int columns, int winLength, boolean pvp, int difficulty, int opponentDifficulty,
+                       Mark markAI, int result, int[] moves) {
+        if (rows > 255 || columns > 255 || rows * columns > 256 || winLength > 255) {
+            throw new IllegalArgumentException("Board too large for the archive: " + rows + "x" + columns);
+        }
+        if (result < DRAW || result > UNFINISHED) {
+            throw new IllegalArgumentException("Unknown result: " + result);
+        }
+        if (opponentDifficulty < 0 || opponentDifficulty > 7) {
+            throw new IllegalArgumentException("Unsupported difficulty: " + opponentDifficulty);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.pvp = pvp;
+        this.difficulty = pvp ? 0 : difficulty;
+        this.opponentDifficulty = pvp ? 0 : opponentDifficulty;
+        this.markAI = pvp ? BLANK : markAI;
+        this.result = result;
+        this.moves = moves.clone();
+    }
+
+    /**
+     * Creates the record of the game played on the given field.
+     * @param field the field after the last move.
+     * @param moves cell indices in the order they were played.
+     */
+    public static GameRecord of(Field field, boolean pvp, int difficulty, Mark markAI, int[] moves) {
+        return new GameRecord(field.getRows(), field.getColumns(), field.getWinLength(), pvp, difficulty, markAI,
+                result(field), moves);
+    }
+
+    /**
+     * Creates the record of a game of the AI against itself, X played with the first difficulty.
+     * @param field the field after the last move.
+     * @param difficultyX difficulty of the AI playing X.
+     * @param difficultyO difficulty of the AI playing O.
+     * @param moves cell indices in the order they were played.
+     */
+    public static GameRecord selfPlay(Field field, int difficultyX, int difficultyO, int[] moves) {
+        return new GameRecord(field.getRows(), field.getColumns(), field.getWinLength(), false, difficultyX,
+                difficultyO, X, result(field), moves);
+    }
+
+    private static int result(Field field) {
+        if (!field.isGameOver()) {
+            return UNFINISHED;
+        }
+        Mark winner = field.getWinner();
+        return winner == X ? X_WON : winner == O ? O_WON : DRAW;
+    }
+
+    /**
+     * @return flags byte of the header, also copied into the index.
+     */
+    int flags() {
+        return (pvp ? FLAG_PVP : 0) | (markAI == X ? FLAG_AI_X : 0) | result << RESULT_SHIFT
+                | opponentDifficulty << OPPONENT_SHIFT;
+    }
+
+    /**
+     * @return true if a move fits into a nibble.
+     */
+    private static boolean packed(int rows, int columns) {
+        return rows * columns <= 16;
+    }
+
+    /**
+     * @return number of bytes of the encoded record.
+     */
+    int encodedLength() {
+        return encodedLength(rows, columns, moves.length);
+    }
+
+    /**
+     * @return number of bytes of a record with the given board and number of moves.
+     */
+    static int encodedLength(int rows, int columns, int moveCount) {
+        return HEADER_BYTES + (packed(rows, columns) ? (moveCount + 1) / 2 : moveCount);
+    }
+
+    /**
+     * Writes the record into the array, see the class documentation for the layout.
+     */
+    void encode(byte[] out, int offset) {
+        out[offset] = (byte) rows;
+        out[offset + 1] = (byte) columns;
+        out[offset + 2] = (byte) winLength;
+        out[offset + 3] = (byte) flags();
+        out[offset + 4] = (byte) difficulty;
+        out[offset + 5] = (byte) (moves.length >>> 8);
+        out[offset + 6] = (byte) moves.length;
+        int position = offset + HEADER_BYTES;
+        if (packed(rows, columns)) {
+            for (int i = 0; i < moves.length; i += 2) {
+                int low = i + 1 < moves.length ? moves[i + 1] : 0;
+                out[position++] = (byte) (moves[i] << 4 | low);
+            }
+        } else {
+            for (int move : moves) {
+                out[position++] = (byte) move;
+            }
+        }
+    }
+
+    /**
+     * Reads a record written by {@link #encode(byte[], int)}.
+     */
+    static GameRecord decode(byte[] in) {
+        int rows = in[0] & 0xFF;
+        int columns = in[1] & 0xFF;
+        int winLength = in[2] & 0xFF;
+        int flags = in[3] & 0xFF;
+        int difficulty = in[4] & 0xFF;
+        int moveCount = (in[5] & 0xFF) << 8 | in[6] & 0xFF;
+        int[] moves = new int[moveCount];
+        if (packed(rows, columns)) {
+            for (int i = 0; i < moveCount; i++) {
+                int value = in[HEADER_BYTES + i / 2] & 0xFF;
+                moves[i] = (i & 1) == 0 ? value >>> 4 : value & 0xF;
+            }
+        } else {
+            for (int i = 0; i < moveCount; i++) {
+                moves[i] = in[HEADER_BYTES + i] & 0xFF;
+            }
+        }
+        boolean pvp = (flags & FLAG_PVP) != 0;
+        Mark markAI = (flags & FLAG_AI_X) != 0 ? X : O;
+        return new GameRecord(rows, columns, winLength, pvp, difficulty, flags >>> OPPONENT_SHIFT & 7, markAI,
+                flags >>> RESULT_SHIFT & 3, moves);
+    }
+
+    /**
+     * Plays the recorded moves on a new field.
+     * @param moveCount number of moves to play, e.g. {@link #getMoveCount()} for the final position.
+     * @return the field after the given number of moves.
+     */
+    public Field replay(int moveCount) {
+        Field field = new Field(rows, columns, winLength);
+        for (int i = 0; i < moveCount; i++) {
+            field.setMark(moves[i], (i & 1) == 0 ? X : O);
+        }
+        return field;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public boolean isPvp() {
+        return pvp;
+    }
+
+    /**
+     * @return AI difficulty, 0 in PvP.
+     */
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * @return true if the AI played against itself, see {@link #selfPlay(Field, int, int, int[])}.
+     */
+    public boolean isSelfPlay() {
+        return opponentDifficulty != 0;
+    }
+
+    /**
+     * @return difficulty of the AI playing O in self-play, 0 otherwise.
+     */
+    public int getOpponentDifficulty() {
+        return opponentDifficulty;
+    }
+
+    /**
+     * @return AIs mark, {@link Mark#BLANK} in PvP.
+     */
+    public Mark getMarkAI() {
+        return markAI;
+    }
+
+    /**
+     * @return one of {@link #DRAW}, {@link #X_WON}, {@link #O_WON}, {@link #UNFINISHED}.
+     */
+    public int getResult() {
+        return result;
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    /**
+     * @return cell indices in the order they were played.
+     */
+    public int[] getMoves() {
+        return moves.clone();
+    }
+
+    @Override
+    public String toString() {
+        String[] results = {"Draw", "X won", "O won", "Unfinished"};
+        return rows + "x" + columns + ", " + winLength + " in a row, "
+                + (pvp ? "PvP" : isSelfPlay() ? "Self-play (X difficulty " + difficulty + ", O difficulty "
+                        + opponentDifficulty + ")" : "PvE (AI " + markAI + ", difficulty " + difficulty + ")")
+                + ", " + results[result] + ", moves " + Arrays.toString(moves);
+    }
+}
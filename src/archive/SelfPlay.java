@@ -0,0 +1,190 @@
+package archive;
+
+import game.AI;
+import game.Field;
+import game.Mark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static game.Mark.*;
+
+/**
+ * Plays games of the AI against itself without the GUI and writes them to a {@link Dataset}, e.g. to
+ * train on positions labelled with the result. Every thread plays on a field of its own and writes
+ * through a {@link Dataset.Batch} of its own, so the threads share nothing but the transposition table
+ * of {@link AI}.
+ *
+ * Usage: {@code SelfPlay [games=100000] [threads=cores] [board=3x3x3] [x=1,2,3] [o=1,2,3] [random=0]
+ * [millis=100] [out=selfplay.gz]}
+ * <pre>
+ * x, o     difficulties of the two sides, every game picks one of each at random
+ * random   the first moves of every game are random, for more different games
+ * millis   budget per move on boards larger than 3x3 and for Monte Carlo
+ * </pre>
+ * Prints the games per second every few seconds and a summary at the end.
+ */
+public final class SelfPlay {
+
+    private static final long REPORT_INTERVAL_MILLIS = 5000;
+
+    private final int rows;
+    private final int columns;
+    private final int winLength;
+    private final int[] difficultiesX;
+    private final int[] difficultiesO;
+    private final int randomMoves;
+    private final Dataset dataset;
+
+    private final AtomicLong started = new AtomicLong();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder positions = new LongAdder();
+    private final LongAdder[] results = {new LongAdder(), new LongAdder(), new LongAdder()};
+
+    private SelfPlay(int rows, int columns, int winLength, int[] difficultiesX, int[] difficultiesO, int randomMoves,
+                     Dataset dataset) {
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.difficultiesX = difficultiesX;
+        this.difficultiesO = difficultiesO;
+        this.randomMoves = randomMoves;
+        this.dataset = dataset;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long games = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String board = "3x3x3";
+        int[] difficultiesX = {1, 2, 3};
+        int[] difficultiesO = {1, 2, 3};
+        int randomMoves = 0;
+        long millis = 100;
+        Path out = Paths.get("selfplay.gz");
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Options are name=value: " + arg);
+            }
+            switch (option[0]) {
+                case "games": games = Long.parseLong(option[1]); break;
+                case "threads": threads = Integer.parseInt(option[1]); break;
+                case "board": board = option[1]; break;
+                case "x": difficultiesX = difficulties(option[1]); break;
+                case "o": difficultiesO = difficulties(option[1]); break;
+                case "random": randomMoves = Integer.parseInt(option[1]); break;
+                case "millis": millis = Long.parseLong(option[1]); break;
+                case "out": out = Paths.get(option[1]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        String[] size = board.split("x");
+        // The threads already use all cores, splitting the search of a move between them doesn't help.
+        AI.setParallelSearch(false);
+        AI.setSearchBudget(millis, 0);
+        AI.setMonteCarloBudget(millis);
+
+        try (Dataset dataset = new Dataset(out)) {
+            SelfPlay selfPlay = new SelfPlay(Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+                    Integer.parseInt(size[2]), difficultiesX, difficultiesO, randomMoves, dataset);
+            selfPlay.run(games, threads);
+        }
+        System.out.printf("Wrote %s, %,d bytes%n", out, Files.size(out));
+    }
+
+    private static int[] difficulties(String list) {
+        int[] difficulties = Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+        for (int difficulty : difficulties) {
+            if (difficulty < 1 || difficulty > 5) {
+                throw new IllegalArgumentException("Difficulties are from 1 to 5: " + list);
+            }
+        }
+        return difficulties;
+    }
+
+    private void run(long count, int threads) throws Exception {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(pool.submit(() -> play(count)));
+        }
+        pool.shutdown();
+        long lastGames = 0;
+        long last = start;
+        while (!pool.awaitTermination(REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+            long now = System.nanoTime();
+            long played = games.sum();
+            System.out.printf("%,d games, %,.0f games/s%n", played, (played - lastGames) * 1e9 / (now - last));
+            lastGames = played;
+            last = now;
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d games (X %,d, O %,d, draw %,d), %,d positions in %.1f s: %,.0f games/s%n",
+                games.sum(), results[GameRecord.X_WON].sum(), results[GameRecord.O_WON].sum(),
+                results[GameRecord.DRAW].sum(), positions.sum(), seconds, games.sum() / seconds);
+    }
+
+    /**
+     * Plays games on one thread until the requested number is started.
+     */
+    private void play(long count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Field field = new Field(rows, columns, winLength);
+        int[] moves = new int[field.getCells()];
+        Dataset.Batch batch = dataset.newBatch();
+        try {
+            while (started.getAndIncrement() < count) {
+                field.clear();
+                int difficultyX = difficultiesX[random.nextInt(difficultiesX.length)];
+                int difficultyO = difficultiesO[random.nextInt(difficultiesO.length)];
+                int moveCount = 0;
+                while (!field.isGameOver()) {
+                    Mark mark = field.isXsTurn() ? X : O;
+                    int cell;
+                    if (moveCount < randomMoves) {
+                        cell = randomFreeCell(field, random);
+                    } else {
+                        int[] move = AI.getMoveByDifficulty(field, mark, mark == X ? difficultyX : difficultyO);
+                        cell = move[0] * columns + move[1];
+                    }
+                    field.setMark(cell, mark);
+                    moves[moveCount++] = cell;
+                }
+                GameRecord record = GameRecord.selfPlay(field, difficultyX, difficultyO,
+                        Arrays.copyOf(moves, moveCount));
+                batch.add(record);
+                results[record.getResult()].increment();
+                positions.add(moveCount + 1);
+                games.increment();
+            }
+            batch.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int randomFreeCell(Field field, ThreadLocalRandom random) {
+        int cell = field.nextFreeCell(0);
+        for (int skip = random.nextInt(field.getCells() - field.numOfMarks()); skip > 0; skip--) {
+            cell = field.nextFreeCell(cell + 1);
+        }
+        return cell;
+    }
+}
@@ -2,91 +2,168 @@ package game;
 
 import static game.Mark.*;
 
+import log.GameLog;
+import log.Level;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * AI for Tic Tac Toe.
  * Multiple difficulties:
- * {@link #easyMove(Field, Mark)}
- * {@link #mediumMove(Field, Mark)}
- * {@link #hardMove(Field, Mark)}
+ * "Easy": {@link MovePolicy#RANDOM}
+ * "Medium": {@link MovePolicy#MEDIUM}
+ * "Hard": a perfect-play table or {@link MovePolicy#BEST}
+ * "Monte Carlo": {@link MonteCarloEngine} with a time budget per move
+ * "Casual": {@link MovePolicy#blunder(double)}, see {@link #setBlunderRate(double)}
+ *
+ * The policies pick from the {@link MoveScores} of a single search, see {@link #scoreMoves(Field, Mark, boolean)}.
+ *
+ * The static methods share one transposition table. For many games at once (e.g. the server), use
+ * {@link SearchEngine} instances instead, which search on a private copy of a {@link Position}.
+ *
+ * A search can be cancelled by interrupting the thread that called
+ * {@link #getMoveByDifficulty(Field, Mark, int)}, it then throws a {@link CancellationException}.
+ * The search places and removes marks on the given field, so a cancelled search can leave marks
+ * behind. Searches that may be cancelled should run on a {@link Field#copy()}.
  */
 public abstract class AI {
 
-    static Random random = new Random();
+    /**
+     * If true, "Hard" moves are looked up in the {@link PerfectPlayTable} instead of being searched.
+     */
+    private static volatile boolean usePerfectPlayTable = true;
 
     /**
-     * Compute difficulty level "Easy" (random) move and print updated field.
-     * @param field current field.
-     * @param markAI the AIs mark.
+     * Tablebases for boards larger than the classic one, "Hard" moves are looked up in them where
+     * possible. Loaded from the files in the system property {@code tictactoe.tablebase}
+     * (separated by {@link File#pathSeparator}), see {@link TablebaseGenerator}.
      */
-    private static int[] easyMove(Field field, Mark markAI) {
-        while (true) {
-            int row = random.nextInt(3);
-            int column = random.nextInt(3);
-            if (field.available(row, column)) {
-                return new int[] {row, column};
+    private static final List<Tablebase> tablebases = new CopyOnWriteArrayList<>();
+
+    static {
+        String files = System.getProperty("tictactoe.tablebase");
+        if (files != null) {
+            for (String file : files.split(File.pathSeparator)) {
+                try {
+                    tablebases.add(Tablebase.open(Paths.get(file)));
+                } catch (IOException e) {
+                    GameLog.log(Level.WARN, "Could not load tablebase: " + e.getMessage());
+                }
             }
         }
     }
 
     /**
-     * Compute difficulty level "Medium" move and print updated field.
-     * This method executes either an Easy or Hard move depending on the state of the game.
-     * Hard if 1 move away from losing or winning, else Easy.
+     * Shared between moves and games. Scores are from the AIs point of view, so the key of
+     * positions searched for O is salted with {@link #MARK_O_KEY}.
+     */
+    private static final TranspositionTable transpositionTable = new TranspositionTable(1 << 16);
+    static final long MARK_O_KEY = 0x9E3779B97F4A7C15L;
+
+    /**
+     * If true, boards larger than the classic one are searched with {@link ParallelSearch}.
+     */
+    private static volatile boolean parallelSearch = true;
+
+    /**
+     * Boards with more than 9 cells cannot be searched to the end. They are searched with
+     * {@link DeepeningSearch} until one of these budgets per move is used up (0 = no limit).
+     */
+    private static volatile long searchMillis = 100;
+    private static volatile long searchNodes = 0;
+
+    /**
+     * Engine of the "Monte Carlo" difficulty, see {@link #setMonteCarloBudget(long)}.
+     */
+    private static volatile MonteCarloEngine monteCarlo = MonteCarloEngine.withTimeBudget(1000);
+
+    /**
+     * Policy of the "Casual" difficulty, see {@link #setBlunderRate(double)}.
+     */
+    private static volatile MovePolicy casual = MovePolicy.blunder(0.25);
+
+    /**
+     * Compute difficulty level "Hard" (optimal) move from a table, if there is one for the board.
+     * On the classic board this is the precomputed {@link PerfectPlayTable} unless disabled with
+     * {@link #setPerfectPlayTable(boolean)}, on larger boards a loaded {@link Tablebase}.
      * @param field current instance of the game.
-     * @param markAI the AIs mark.
-     * @return Int[] containing move.
+     * @param random random generator of the calling thread.
+     * @return cell index of the move, -1 if the move has to be searched.
      */
-    private static int[] mediumMove(Field field, Mark markAI) {
-        int bestScore = Integer.MIN_VALUE;
-        int worstScore = Integer.MAX_VALUE;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (field.available(i, j)) {
-                    field.setMark(i, j, markAI);
-                    int score = miniMax(field, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, false, markAI);
-                    field.setMark(i, j, BLANK);
-                    bestScore = Math.max(bestScore, score);
-                    worstScore = Math.min(worstScore, score);
-                    if (bestScore == 10 || worstScore == -20) {
-                        return hardMove(field, markAI);
-                    }
-                }
+    private static int tableMove(Field field, Random random) {
+        if (usePerfectPlayTable && field.isClassic()) {
+            return PerfectPlayTable.pickMove(field, random);
+        }
+        for (Tablebase tablebase : tablebases) {
+            if (tablebase.matches(field)) {
+                // -1 if lost anyway, the search delays the loss.
+                return tablebase.pickMove(field, random);
             }
         }
-        return easyMove(field, markAI);
+        return -1;
     }
 
     /**
-     * Compute difficulty level "Hard" (optimal) move.
+     * Lets the policy pick a move after scoring the moves as far as the policy needs it.
      * @param field current instance of the game.
      * @param markAI AIs mark.
+     * @param policy the difficulty.
+     * @param table transposition table of the search.
+     * @param random random generator of the calling thread.
      * @return Int[] containing move.
      */
-    private static int[] hardMove(Field field, Mark markAI) {
-        // If AIs mark is X and its the first turn..
-        if(markAI == X && field.numOfMarks() == 0) {
-            return getFirstHardMove();
-        }
-
-        int bestScore = Integer.MIN_VALUE;
-        int[] move = {-1, -1};
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (field.available(i, j)) {
-                    field.setMark(i, j, markAI);
-                    int score = miniMax(field, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, false, markAI);
-                    field.setMark(i, j, BLANK);
-                    if (score > bestScore) {
-                        bestScore = score;
-                        move[0] = i;
-                        move[1] = j;
-                    }
-                }
-            }
+    private static int[] policyMove(Field field, Mark markAI, MovePolicy policy, TranspositionTable table,
+                                    Random random) {
+        MoveScores scores = policy.requires() == MovePolicy.Scores.NONE ? MoveScores.unscored(field)
+                : scoreMoves(field, markAI, table, policy.requires() == MovePolicy.Scores.EXACT);
+        return scores.toMove(policy.select(scores, random));
+    }
+
+    /**
+     * Scores every legal move of the AI in a single search.
+     * Boards with more than 9 cells are searched as deep as the budget allows, see
+     * {@link #setSearchBudget(long, long)}.
+     * @param field current instance of the game, not modified unless the search is cancelled.
+     * @param markAI AIs mark.
+     * @param exact true to get the exact score of every move, false if only the best moves need
+     *              exact scores, which is faster.
+     */
+    public static MoveScores scoreMoves(Field field, Mark markAI, boolean exact) {
+        return scoreMoves(field, markAI, transpositionTable, exact);
+    }
+
+    static MoveScores scoreMoves(Field field, Mark markAI, TranspositionTable table, boolean exact) {
+        if (field.getCells() > 9) {
+            return new DeepeningSearch(field, markAI, table, searchMillis, searchNodes).run(exact, parallelSearch);
+        }
+        int[] scores = new int[field.getCells()];
+        Arrays.fill(scores, MoveScores.ILLEGAL);
+        int best = MoveScores.ILLEGAL;
+        for (int cell = field.nextFreeCell(0); cell >= 0; cell = field.nextFreeCell(cell + 1)) {
+            field.setMark(cell, markAI);
+            scores[cell] = miniMax(field, 0, field.getCells(), rootAlpha(best, exact), Integer.MAX_VALUE, false,
+                    markAI, table);
+            field.setMark(cell, BLANK);
+            best = Math.max(best, scores[cell]);
         }
-        return move;
+        return new MoveScores(scores, winScore(field), field.getColumns(), exact, true);
+    }
+
+    /**
+     * Alpha of the search of a root move. With a full window every score is exact. Otherwise the
+     * window starts just below the best score so far: worse moves fail low quickly, moves that tie
+     * with the best one still get their exact score.
+     */
+    static int rootAlpha(int bestScore, boolean exact) {
+        return exact || bestScore == MoveScores.ILLEGAL ? Integer.MIN_VALUE : bestScore - 1;
     }
 
     /**
@@ -95,17 +172,22 @@ public abstract class AI {
      * @param depth counts moves required to achieve a certain outcome.
      *              This is then used for a more logical evaluation of the score
      *              (e.g. quicker win = higher score).
+     * @param maxDepth depth at which the search stops and scores the position as a draw.
      * @param alpha value for alpha-beta pruning.
      * @param beta value for alpha-beta pruning.
      * @param isMax true if maximizing score, else minimizing.
      * @param markAI AIs mark.
+     * @param table transposition table of the search.
      * @return score.
      */
-    private static int miniMax(Field field, int depth, int alpha, int beta, boolean isMax, Mark markAI) {
+    static int miniMax(Field field, int depth, int maxDepth, int alpha, int beta, boolean isMax, Mark markAI,
+                       TranspositionTable table) {
         // Terminal condition: Ends method execution if end-of-game state is reached in during recursion.
         // Logic: If the AI marks miniMax move (achieved by the recursion later) ultimately results in a win,
         // the moves score is valued as 10. If its a loss its -10 and the score is 0 in case of a draw
         // (-20 if lose next turn for clearer distinction from regular lose, used for medium difficulty).
+        // On boards with more than 9 cells, 10 is replaced by the number of cells + 1 (see winScore()),
+        // so the depth can never turn a win into a loss.
         // We then also subtract the depth (if win) or subtract FROM the depth (if loose).
 
         // This will achieve two things:
@@ -113,21 +195,63 @@ public abstract class AI {
         // For example if a lose can be delayed for 2 turns by blocking a row (considering opponent plays perfect and AI knows
         // loose is guaranteed because of that anyway), this score will be higher than the score for not blocking and
         // letting the opponent win faster.
-        if (!field.getGameState().equals("Game not finished")) {
-            if (markAI == X) {
-                return field.getGameState().equals("X wins") ? 10 - depth :
-                        field.getGameState().equals("O wins") && depth == 1 ? -20 :
-                          field.getGameState().equals("O wins") ? depth - 10 : 0;
+        // The checks below work directly on the bitboards, so no Strings are compared in the recursion.
+        boolean counting = SearchStats.enabled;
+        if (counting) {
+            // depth 0 is the position after the root move, so it's ply 1.
+            SearchStats.node(depth + 1);
+        }
+        Mark markOpponent = markAI == X ? O : X;
+        int winScore = winScore(field);
+        if (field.hasWon(markAI)) {
+            return winScore - depth;
+        }
+        if (field.hasWon(markOpponent)) {
+            return depth == 1 ? -2 * winScore : depth - winScore;
+        }
+        if (field.isFull() || depth >= maxDepth) {
+            return 0;
+        }
 
-            } else {
-                return field.getGameState().equals("O wins") ? 10 - depth :
-                        field.getGameState().equals("X wins") && depth == 1 ? -20 :
-                          field.getGameState().equals("X wins") ? depth - 10 : 0;
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("AI search cancelled.");
+        }
 
+        // Transposition table lookup. Positions right below the root (depth 0) are skipped,
+        // because only their scores can contain the -20 "lose next turn" value.
+        // Entries from a shallower search than the one needed here are ignored.
+        long key = 0;
+        int draft = Math.min(field.getCells() - field.numOfMarks(), maxDepth - depth);
+        int alphaOriginal = alpha;
+        int betaOriginal = beta;
+        if (depth > 0) {
+            key = field.getCanonicalKey() ^ (markAI == X ? 0 : MARK_O_KEY);
+            long entry = table.probe(key);
+            if (counting) {
+                SearchStats.tableProbe();
+            }
+            if (entry != TranspositionTable.MISS && TranspositionTable.draft(entry) >= draft) {
+                if (counting) {
+                    SearchStats.tableHit();
+                }
+                int score = fromTableScore(TranspositionTable.score(entry), depth);
+                int flag = TranspositionTable.flag(entry);
+                if (flag == TranspositionTable.EXACT) {
+                    return score;
+                } else if (flag == TranspositionTable.LOWER_BOUND) {
+                    alpha = Math.max(alpha, score);
+                } else {
+                    beta = Math.min(beta, score);
+                }
+                if (alpha >= beta) {
+                    return score;
+                }
             }
         }
 
         Mark mark;
+        int result;
+        int nodeDepth = depth;
         depth += 1;
 
         // If maximizing..
@@ -136,49 +260,81 @@ public abstract class AI {
             int maxScore = Integer.MIN_VALUE;
             // Switch marks depending on the AIs mark.
             // We have to use the AIs mark here.
-            mark = markAI == X ? X : O;
-            for (int i = 0; i < 3; i++) {
-                for (int j = 0; j < 3; j++) {
-                    if (field.available(i, j)) {
-                        field.setMark(i, j, mark);
-                        // Set new maxScore if miniMax results in a higher score
-                        // We want to get the highest possible score -> maximizing.
-                        int score = miniMax(field, depth, alpha, beta, false, markAI);
-                        maxScore = Math.max(score, maxScore);
-                        alpha = Math.max(alpha, score);
-                        field.setMark(i, j, BLANK);
-                        if (alpha >= beta) {
-                            return maxScore;
-                        }
+            mark = markAI;
+            for (int cell = field.nextFreeCell(0); cell >= 0; cell = field.nextFreeCell(cell + 1)) {
+                field.setMark(cell, mark);
+                // Set new maxScore if miniMax results in a higher score
+                // We want to get the highest possible score -> maximizing.
+                int score = miniMax(field, depth, maxDepth, alpha, beta, false, markAI, table);
+                maxScore = Math.max(score, maxScore);
+                alpha = Math.max(alpha, score);
+                field.setMark(cell, BLANK);
+                if (alpha >= beta) {
+                    if (counting) {
+                        SearchStats.cutoff();
                     }
+                    break;
                 }
             }
-            return maxScore;
+            result = maxScore;
         // If minimizing..
         } else {
             // Set a "worst case" score (unattainably HIGH).
             int minScore = Integer.MAX_VALUE;
             // Switch marks depending the AIs mark.
             // In this case we need to use the opponents mark.
-            mark = markAI == X ? O : X;
-            for (int i = 0; i < 3; i++) {
-                for (int j = 0; j < 3; j++) {
-                    if (field.available(i, j)) {
-                        field.setMark(i, j, mark);
-                        // Set new minScore if miniMax results in a lower score.
-                        // We want to get the lowest possible score -> minimizing.
-                        int score = miniMax(field, depth, alpha, beta, true, markAI);
-                        minScore = Math.min(score, minScore);
-                        beta = Math.min(beta, score);
-                        field.setMark(i, j, BLANK);
-                        if (beta <= alpha) {
-                            return minScore;
-                        }
+            mark = markOpponent;
+            for (int cell = field.nextFreeCell(0); cell >= 0; cell = field.nextFreeCell(cell + 1)) {
+                field.setMark(cell, mark);
+                // Set new minScore if miniMax results in a lower score.
+                // We want to get the lowest possible score -> minimizing.
+                int score = miniMax(field, depth, maxDepth, alpha, beta, true, markAI, table);
+                minScore = Math.min(score, minScore);
+                beta = Math.min(beta, score);
+                field.setMark(cell, BLANK);
+                if (beta <= alpha) {
+                    if (counting) {
+                        SearchStats.cutoff();
                     }
+                    break;
                 }
             }
-            return minScore;
+            result = minScore;
         }
+
+        if (nodeDepth > 0) {
+            int flag = result <= alphaOriginal ? TranspositionTable.UPPER_BOUND :
+                    result >= betaOriginal ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            table.store(key, toTableScore(result, nodeDepth), flag, draft);
+        }
+        return result;
+    }
+
+    /**
+     * Score of a win right after the root move: 10 on the classic board and the number of
+     * cells + 1 on larger boards, so it is always larger than any depth.
+     */
+    private static int winScore(Field field) {
+        return Math.max(10, field.getCells() + 1);
+    }
+
+    /**
+     * Scores contain the distance from the root (10 - depth). The table stores them relative to the
+     * position instead, so an entry stays valid when the position is reached at another depth.
+     */
+    private static int toTableScore(int score, int depth) {
+        return score > 0 ? score + depth : score < 0 ? score - depth : 0;
+    }
+
+    private static int fromTableScore(int score, int depth) {
+        return score > 0 ? score - depth : score < 0 ? score + depth : 0;
+    }
+
+    /**
+     * @return the transposition table shared by the static methods, e.g. to clear it between measurements.
+     */
+    public static TranspositionTable getTranspositionTable() {
+        return transpositionTable;
     }
 
     /**
@@ -188,32 +344,143 @@ public abstract class AI {
      * @param difficulty difficulty level of the move to be computed.
      * @return Int[] containing move.
      */
-     public static int[] getMoveByDifficulty(Field field, Mark markAI, int difficulty) {
+    public static int[] getMoveByDifficulty(Field field, Mark markAI, int difficulty) {
+        return move(field, markAI, difficulty, transpositionTable, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Computes a move with the given search state, see {@link #getMoveByDifficulty(Field, Mark, int)}.
+     * @param table transposition table of the search, safe to share between threads.
+     * @param random random generator of the calling thread.
+     */
+    static int[] move(Field field, Mark markAI, int difficulty, TranspositionTable table, Random random) {
+        if (SearchStats.enabled) {
+            return SearchStats.measure(difficulty, () -> search(field, markAI, difficulty, table, random));
+        }
+        return search(field, markAI, difficulty, table, random);
+    }
+
+    private static int[] search(Field field, Mark markAI, int difficulty, TranspositionTable table, Random random) {
         switch (difficulty) {
             case 1:
-                return easyMove(field, markAI);
+                return policyMove(field, markAI, MovePolicy.RANDOM, table, random);
             case 2:
-                return mediumMove(field, markAI);
+                return policyMove(field, markAI, MovePolicy.MEDIUM, table, random);
             case 3:
-                return hardMove(field, markAI);
+                int cell = tableMove(field, random);
+                return cell >= 0 ? new int[] {cell / field.getColumns(), cell % field.getColumns()}
+                        : policyMove(field, markAI, MovePolicy.BEST, table, random);
+            case 4:
+                return monteCarlo.move(Position.of(field));
+            case 5:
+                return policyMove(field, markAI, casual, table, random);
             default:
-                System.out.println("Unsupported AI difficulty.");
+                GameLog.log(Level.WARN, "Unsupported AI difficulty: " + difficulty);
                 return new int[] {-1, -1};
         }
     }
 
     /**
-     * At the start of the game, there are multiple valid moves which are equally optimal.
-     * These are one the 4 corners present on the board. To add some variability, this
-     * method picks one of these moves randomly. Otherwise the Minimax algorithm will always pick
-     * the first corner which may get a bit boring. This behaviour is explained by the 4 corners having
-     * an equally high score, so the initially set highest score of the first corner never gets overwritten
-     * (The Minimax algorithm goes cell by cell, starting at the top-left cell).
-     * @return
+     * @param difficulty 1 (Easy), 2 (Medium), 3 (Hard, without its tables) or 5 (Casual).
+     * @return the policy with which the difficulty picks from the {@link MoveScores} of a search.
+     * @throws IllegalArgumentException for "Monte Carlo", which doesn't score moves.
+     */
+    public static MovePolicy getPolicy(int difficulty) {
+        switch (difficulty) {
+            case 1:
+                return MovePolicy.RANDOM;
+            case 2:
+                return MovePolicy.MEDIUM;
+            case 3:
+                return MovePolicy.BEST;
+            case 5:
+                return casual;
+            default:
+                throw new IllegalArgumentException("Difficulty " + difficulty + " has no move policy.");
+        }
+    }
+
+    /**
+     * Runs the searches of the difficulties once on throwaway fields, so the JIT compiles them before
+     * the first real move. Uses its own transposition table and doesn't count in {@link SearchStats}.
+     * Takes about two search budgets (see {@link #setSearchBudget(long, long)}), meant for a background
+     * thread at startup.
+     */
+    public static void warmUp() {
+        TranspositionTable table = new TranspositionTable(1 << 12);
+        Random random = new Random();
+        Field classic = new Field();
+        PerfectPlayTable.pickMove(classic, random);
+        scoreMoves(classic, X, table, true);
+        // Two boards of different size, so the search doesn't only run with one line layout.
+        Field small = new Field(4, 4, 4);
+        small.setMark(5, X);
+        scoreMoves(small, O, table, true);
+        Field large = new Field(7, 7, 4);
+        large.setMark(24, X);
+        scoreMoves(large, O, table, false);
+    }
+
+    /**
+     * Enables or disables the parallel root search on boards larger than 3x3. On the classic board the
+     * search is too small to be worth splitting between threads.
+     * @param enabled true to search the root moves on all cores.
+     */
+    public static void setParallelSearch(boolean enabled) {
+        parallelSearch = enabled;
+    }
+
+    /**
+     * Sets the budget per move on boards larger than 3x3 (default 100 ms, no node limit). The search
+     * deepens until one of them is used up and plays the best move of the last completed depth.
+     * @param millis time per move, 0 for no limit.
+     * @param nodes nodes per move, 0 for no limit.
+     */
+    public static void setSearchBudget(long millis, long nodes) {
+        if (millis <= 0 && nodes <= 0) {
+            throw new IllegalArgumentException("The search needs a time or a node budget.");
+        }
+        searchMillis = Math.max(0, millis);
+        searchNodes = Math.max(0, nodes);
+    }
+
+    /**
+     * Sets the share of moves in which the "Casual" difficulty blunders (default 0.25): instead of the
+     * best move it plays a random worse one.
+     * @param blunderRate probability of a blunder, from 0 (plays like "Hard") to 1.
+     */
+    public static void setBlunderRate(double blunderRate) {
+        casual = MovePolicy.blunder(blunderRate);
+    }
+
+    /**
+     * Sets the time the "Monte Carlo" difficulty may think per move (default 1 second).
+     * More time means more playouts and stronger moves, see {@link MonteCarloEngine#getPlayoutsPerSecond()}.
+     */
+    public static void setMonteCarloBudget(long millis) {
+        monteCarlo = MonteCarloEngine.withTimeBudget(millis);
+    }
+
+    /**
+     * @return engine of the "Monte Carlo" difficulty, e.g. to read its playouts per second.
+     */
+    public static MonteCarloEngine getMonteCarloEngine() {
+        return monteCarlo;
+    }
+
+    /**
+     * Uses the tablebase for "Hard" moves on its board, in addition to the ones loaded at startup.
+     */
+    public static void addTablebase(Tablebase tablebase) {
+        tablebases.add(tablebase);
+    }
+
+    /**
+     * Switches "Hard" between the table lookup (default) and a full search on every move.
+     * Both play perfectly, the table additionally picks randomly among equally good moves.
+     * @param enabled true to use the {@link PerfectPlayTable}.
      */
-    public static int[] getFirstHardMove() {
-        int[][] validFirstMoves = { {0,0}, {0,2}, {2,0}, {2,2} };
-        int pickMove = random.nextInt(4);
-        return new int[] {validFirstMoves[pickMove][0], validFirstMoves[pickMove][1]};
+    public static void setPerfectPlayTable(boolean enabled) {
+        usePerfectPlayTable = enabled;
     }
 }
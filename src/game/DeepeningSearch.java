@@ -0,0 +1,508 @@
+package game;
+
+import static game.Mark.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Iterative deepening alpha-beta search for boards larger than 3x3.
+ * The moves are searched 1, 2, 3, ... plies deep until the time or node budget is used up, the
+ * result of the last completed iteration is returned. So a move is always ready, and the AI answers
+ * within the budget on any board.
+ *
+ * Positions at the depth limit are scored by {@link #evaluate()}: every line of winLength cells that
+ * only one player has marks in is worth more the more marks it has. The value is updated with every
+ * move, so it costs nothing at the leaves.
+ *
+ * Only moves at most {@link Geometry#NEIGHBOUR_DISTANCE} cells away from a mark are searched, a move
+ * far away from all marks neither builds nor blocks a line. Moves are tried in this order: the best move stored in the transposition table (the principal
+ * variation of the previous iteration), two killer moves per ply (moves that caused a cutoff in a
+ * sibling), then by history (how often a move caused cutoffs anywhere) and by the number of lines
+ * through the cell, which favours the center. At the root the moves are sorted by the scores of the
+ * previous iteration.
+ *
+ * Scores follow {@link AI#miniMax(Field, int, int, int, int, boolean, Mark, TranspositionTable)} with
+ * {@link #WIN} as win score, the evaluation always stays far below it.
+ */
+final class DeepeningSearch {
+
+    static final int WIN = 1 << 24;
+    private static final int MAX_EVAL = WIN / 4;
+    private static final int DECISIVE = WIN / 2;
+    private static final int THREAT = MAX_EVAL / 2;
+
+    /**
+     * Nodes a thread searches between two checks of the budget.
+     */
+    private static final int CHECK_INTERVAL = 256;
+
+    /**
+     * Moves per node that are picked one by one before the remaining moves are sorted.
+     */
+    private static final int SELECTED_MOVES = 4;
+
+    private static final Timeout TIMEOUT = new Timeout();
+
+    private final Field root;
+    private final Mark markAI;
+    private final Mark markOpponent;
+    private final TranspositionTable table;
+    private final Geometry geometry;
+    private final int sideSize;
+
+    /**
+     * Value of a line for X, indexed by {@code xMarks * sideSize + oMarks}.
+     */
+    private final int[] lineValues;
+
+    /**
+     * Move ordering state, shared by the threads of the search. Lost updates only change the order.
+     */
+    private final int[][] history;
+    private final int[][] killers;
+
+    private final long start;
+    private final long budgetNanos;
+    private final long deadline;
+    private final long nodeLimit;
+    private final AtomicLong nodes = new AtomicLong();
+    private final Thread caller = Thread.currentThread();
+
+    /**
+     * The budget is only checked after the first iteration, so there is always a move.
+     */
+    private volatile boolean budgetActive = false;
+
+    /**
+     * Thrown through the search when the budget is used up. Preallocated, it carries no stack trace.
+     */
+    private static final class Timeout extends RuntimeException {
+        private Timeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * @param field position to search, not modified.
+     * @param markAI AIs mark.
+     * @param table transposition table, may be shared with other searches.
+     * @param millis time budget per move, 0 for no limit.
+     * @param nodeLimit node budget per move, 0 for no limit.
+     */
+    DeepeningSearch(Field field, Mark markAI, TranspositionTable table, long millis, long nodeLimit) {
+        this.root = field;
+        this.markAI = markAI;
+        this.markOpponent = markAI == X ? O : X;
+        this.table = table;
+        this.geometry = field.getGeometry();
+        this.sideSize = geometry.winLength + 1;
+        this.history = new int[2][geometry.cells];
+        this.killers = new int[geometry.cells + 1][2];
+        for (int[] killer : killers) {
+            Arrays.fill(killer, -1);
+        }
+        this.lineValues = new int[sideSize * sideSize];
+        for (int x = 0; x <= geometry.winLength; x++) {
+            for (int o = 0; o <= geometry.winLength; o++) {
+                // Lines with both marks can't be won anymore, empty lines don't favour anyone.
+                lineValues[x * sideSize + o] = x > 0 && o > 0 ? 0 : x > 0 ? lineValue(x) : o > 0 ? -lineValue(o) : 0;
+            }
+        }
+        // The evaluation starts at 0 and only counts a line once it gets a mark. That is only the value of
+        // the empty board if an empty line is worth nothing.
+        if (lineValues[0] != 0) {
+            throw new IllegalStateException("The empty board is worth " + lineValues[0] + " per line instead of 0.");
+        }
+        this.start = System.nanoTime();
+        this.budgetNanos = millis > 0 ? millis * 1_000_000 : Long.MAX_VALUE;
+        // Unwinding an aborted iteration takes a few milliseconds, so it is aborted a little earlier.
+        this.deadline = millis > 0 ? start + budgetNanos / 20 * 19 : Long.MAX_VALUE;
+        this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+    }
+
+    /**
+     * A line with n marks of one player is worth 8^(n-1), so one more mark in a line outweighs
+     * several lines with one mark less.
+     */
+    private static int lineValue(int marks) {
+        return 1 << Math.min(3 * (marks - 1), 18);
+    }
+
+    /**
+     * Runs the iterations until the budget is used up or the result can't change anymore.
+     * @param exact true to get the exact score of every move, see {@link AI#scoreMoves(Field, Mark, boolean)}.
+     * @param parallel true to split the root moves between the threads of the common pool.
+     * @return the scores of the last completed iteration.
+     */
+    MoveScores run(boolean exact, boolean parallel) {
+        int[] cells = rootMoves();
+        sortBy(cells, cell -> geometry.cellLines[cell].length);
+
+        int[] completed = new int[geometry.cells];
+        Arrays.fill(completed, MoveScores.ILLEGAL);
+        for (int depth = 1; depth <= cells.length; depth++) {
+            int[] scores = new int[geometry.cells];
+            Arrays.fill(scores, MoveScores.ILLEGAL);
+            int remaining = depth - 1;
+            try {
+                if (parallel) {
+                    ParallelSearch.scoreMoves(cells, scores, exact, (cell, alpha) -> searchRoot(cell, remaining, alpha));
+                } else {
+                    int best = MoveScores.ILLEGAL;
+                    for (int cell : cells) {
+                        scores[cell] = searchRoot(cell, remaining, AI.rootAlpha(best, exact));
+                        best = Math.max(best, scores[cell]);
+                    }
+                }
+            } catch (Timeout timeout) {
+                break;
+            }
+            completed = scores;
+            budgetActive = true;
+            int best = MoveScores.ILLEGAL;
+            for (int cell : cells) {
+                best = Math.max(best, scores[cell]);
+            }
+            // A won or lost game doesn't change with more depth. The next iteration takes several
+            // times as long as this one, so it is not started if it can't finish anyway.
+            if (Math.abs(best) >= DECISIVE || System.nanoTime() - start > budgetNanos / 2
+                    || nodes.get() > nodeLimit / 2) {
+                break;
+            }
+            int[] ranked = scores;
+            sortBy(cells, cell -> ranked[cell]);
+            for (int[] side : history) {
+                for (int cell = 0; cell < side.length; cell++) {
+                    side[cell] >>= 1;
+                }
+            }
+        }
+        return new MoveScores(completed, WIN, geometry.columns, exact, true);
+    }
+
+    /**
+     * @return the free cells near a mark, or all free cells if there is none (e.g. on the empty board).
+     */
+    private int[] rootMoves() {
+        int[] cells = new int[geometry.cells];
+        int count = 0;
+        for (int cell = root.nextFreeCell(0); cell >= 0; cell = root.nextFreeCell(cell + 1)) {
+            for (int neighbour : geometry.neighbours[cell]) {
+                if (root.getMark(neighbour) != BLANK) {
+                    cells[count++] = cell;
+                    break;
+                }
+            }
+        }
+        if (count == 0) {
+            for (int cell = root.nextFreeCell(0); cell >= 0; cell = root.nextFreeCell(cell + 1)) {
+                cells[count++] = cell;
+            }
+        }
+        return Arrays.copyOf(cells, count);
+    }
+
+    private interface CellKey {
+        int of(int cell);
+    }
+
+    /**
+     * Stable sort, highest key first. Only used at the root, so an insertion sort is enough.
+     */
+    private static void sortBy(int[] cells, CellKey key) {
+        for (int i = 1; i < cells.length; i++) {
+            int cell = cells[i];
+            int value = key.of(cell);
+            int j = i - 1;
+            while (j >= 0 && key.of(cells[j]) < value) {
+                cells[j + 1] = cells[j];
+                j--;
+            }
+            cells[j + 1] = cell;
+        }
+    }
+
+    private int searchRoot(int cell, int remaining, int alpha) {
+        // Searches below a root move can be smaller than the check interval on large boards.
+        checkBudget(0);
+        Worker worker = new Worker();
+        worker.play(cell, markAI);
+        int score = worker.search(0, remaining, alpha, Integer.MAX_VALUE, false);
+        nodes.addAndGet(worker.unchecked);
+        return score;
+    }
+
+    /**
+     * @param searched nodes searched since the last check.
+     */
+    private void checkBudget(int searched) {
+        long total = nodes.addAndGet(searched);
+        if (caller.isInterrupted()) {
+            throw new CancellationException("AI search cancelled.");
+        }
+        if (budgetActive && (total >= nodeLimit || System.nanoTime() >= deadline)) {
+            throw TIMEOUT;
+        }
+    }
+
+    /**
+     * Search state of one thread: a copy of the board and the marks per line.
+     */
+    private final class Worker {
+
+        private final Field board = root.copy();
+        private final int[] xMarks = new int[geometry.lines];
+        private final int[] oMarks = new int[geometry.lines];
+
+        /**
+         * Lines that a player can complete with one more mark.
+         */
+        private int xThreats;
+        private int oThreats;
+        private final long[][] moves = new long[geometry.cells + 1][];
+        private final boolean counting = SearchStats.enabled;
+        private int value;
+        private int unchecked;
+
+        /**
+         * Number of marks near each cell, see {@link Geometry#neighbours}.
+         */
+        private final int[] near = new int[geometry.cells];
+
+        Worker() {
+            for (int cell = 0; cell < geometry.cells; cell++) {
+                Mark mark = board.getMark(cell);
+                if (mark != BLANK) {
+                    count(cell, mark, 1);
+                }
+            }
+        }
+
+        void play(int cell, Mark mark) {
+            board.setMark(cell, mark);
+            count(cell, mark, 1);
+        }
+
+        void undo(int cell, Mark mark) {
+            count(cell, mark, -1);
+            board.setMark(cell, BLANK);
+        }
+
+        private void count(int cell, Mark mark, int change) {
+            for (int neighbour : geometry.neighbours[cell]) {
+                near[neighbour] += change;
+            }
+            int[] marks = mark == X ? xMarks : oMarks;
+            int threat = geometry.winLength - 1;
+            for (int line : geometry.cellLines[cell]) {
+                int x = xMarks[line];
+                int o = oMarks[line];
+                value -= lineValues[x * sideSize + o];
+                xThreats -= x == threat && o == 0 ? 1 : 0;
+                oThreats -= o == threat && x == 0 ? 1 : 0;
+                marks[line] += change;
+                x = xMarks[line];
+                o = oMarks[line];
+                value += lineValues[x * sideSize + o];
+                xThreats += x == threat && o == 0 ? 1 : 0;
+                oThreats += o == threat && x == 0 ? 1 : 0;
+            }
+        }
+
+        /**
+         * Heuristic score of the position for the AI. Threats are looked at first, so the horizon
+         * doesn't hide a win on the next move: the player to move wins if they have a line that is
+         * one mark short, the other player most likely wins if they have two of them. These are
+         * still heuristic scores, far from {@link #WIN}.
+         * @param aiToMove true if the AI makes the next move.
+         */
+        private int evaluate(boolean aiToMove) {
+            int aiThreats = markAI == X ? xThreats : oThreats;
+            int opponentThreats = markAI == X ? oThreats : xThreats;
+            int score = markAI == X ? value : -value;
+            if (aiToMove ? aiThreats > 0 : opponentThreats > 0) {
+                score = aiToMove ? THREAT : -THREAT;
+            } else if (aiToMove ? opponentThreats > 1 : aiThreats > 1) {
+                score = aiToMove ? -THREAT / 2 : THREAT / 2;
+            }
+            return Math.max(-MAX_EVAL, Math.min(MAX_EVAL, score));
+        }
+
+        /**
+         * Alpha-beta search below a root move, see {@link AI#miniMax(Field, int, int, int, int, boolean, Mark, TranspositionTable)}.
+         * @param ply plies after the root move.
+         * @param remaining plies left until the position is evaluated.
+         */
+        int search(int ply, int remaining, int alpha, int beta, boolean isMax) {
+            if (counting) {
+                SearchStats.node(ply + 1);
+            }
+            if (++unchecked == CHECK_INTERVAL) {
+                unchecked = 0;
+                checkBudget(CHECK_INTERVAL);
+            }
+            if (board.hasWon(markAI)) {
+                return WIN - ply;
+            }
+            if (board.hasWon(markOpponent)) {
+                return ply == 1 ? -2 * WIN : ply - WIN;
+            }
+            if (board.isFull()) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return evaluate(isMax);
+            }
+
+            // Positions right below the root are not stored, as in miniMax.
+            long key = 0;
+            int symmetry = 0;
+            int tableMove = -1;
+            int draft = Math.min(geometry.cells - board.numOfMarks(), remaining);
+            int alphaOriginal = alpha;
+            int betaOriginal = beta;
+            if (ply > 0) {
+                key = board.getCanonicalKey() ^ (markAI == X ? 0 : AI.MARK_O_KEY);
+                symmetry = board.getCanonicalSymmetry();
+                long entry = table.probe(key);
+                if (counting) {
+                    SearchStats.tableProbe();
+                }
+                if (entry != TranspositionTable.MISS) {
+                    int move = TranspositionTable.move(entry);
+                    if (move >= 0) {
+                        tableMove = geometry.inverse[symmetry][move];
+                    }
+                    if (TranspositionTable.draft(entry) >= draft) {
+                        if (counting) {
+                            SearchStats.tableHit();
+                        }
+                        int score = fromTableScore(TranspositionTable.score(entry), ply);
+                        int flag = TranspositionTable.flag(entry);
+                        if (flag == TranspositionTable.EXACT) {
+                            return score;
+                        } else if (flag == TranspositionTable.LOWER_BOUND) {
+                            alpha = Math.max(alpha, score);
+                        } else {
+                            beta = Math.min(beta, score);
+                        }
+                        if (alpha >= beta) {
+                            return score;
+                        }
+                    }
+                }
+            }
+
+            Mark mark = isMax ? markAI : markOpponent;
+            int side = mark == X ? 0 : 1;
+            int count = orderMoves(ply, side, tableMove);
+            long[] moveList = moves[ply];
+            int result = isMax ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            int bestMove = -1;
+            for (int i = 0; i < count; i++) {
+                // Most nodes are cut off after a few moves, so the first moves are only selected.
+                // If that didn't help, the rest is sorted at once.
+                if (i < SELECTED_MOVES) {
+                    int pick = i;
+                    for (int j = i + 1; j < count; j++) {
+                        if (moveList[j] < moveList[pick]) {
+                            pick = j;
+                        }
+                    }
+                    long move = moveList[pick];
+                    moveList[pick] = moveList[i];
+                    moveList[i] = move;
+                } else if (i == SELECTED_MOVES) {
+                    Arrays.sort(moveList, i, count);
+                }
+                int cell = (int) moveList[i];
+
+                play(cell, mark);
+                int score = search(ply + 1, remaining - 1, alpha, beta, !isMax);
+                undo(cell, mark);
+                if (isMax ? score > result : score < result) {
+                    result = score;
+                    bestMove = cell;
+                }
+                if (isMax) {
+                    alpha = Math.max(alpha, score);
+                } else {
+                    beta = Math.min(beta, score);
+                }
+                if (alpha >= beta) {
+                    if (counting) {
+                        SearchStats.cutoff();
+                    }
+                    int[] killer = killers[ply];
+                    if (killer[0] != cell) {
+                        killer[1] = killer[0];
+                        killer[0] = cell;
+                    }
+                    history[side][cell] += remaining * remaining;
+                    break;
+                }
+            }
+
+            if (ply > 0) {
+                int flag = result <= alphaOriginal ? TranspositionTable.UPPER_BOUND :
+                        result >= betaOriginal ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+                table.store(key, toTableScore(result, ply), flag, draft, geometry.symmetries[symmetry][bestMove]);
+            }
+            return result;
+        }
+
+        /**
+         * Collects the free cells near a mark in {@code moves[ply]}, packed with their ordering key so
+         * that ascending order is the order to search them in: {@code -key << 32 | cell}.
+         * If no free cell is near a mark, all free cells are collected.
+         * @return number of moves.
+         */
+        private int orderMoves(int ply, int side, int tableMove) {
+            if (moves[ply] == null) {
+                moves[ply] = new long[geometry.cells];
+            }
+            long[] moveList = moves[ply];
+            int[] killer = killers[ply];
+            int count = collectMoves(moveList, killer, side, tableMove, true);
+            if (count == 0) {
+                count = collectMoves(moveList, killer, side, tableMove, false);
+            }
+            return count;
+        }
+
+        private int collectMoves(long[] moveList, int[] killer, int side, int tableMove, boolean nearOnly) {
+            int count = 0;
+            for (int cell = board.nextFreeCell(0); cell >= 0; cell = board.nextFreeCell(cell + 1)) {
+                if (nearOnly && near[cell] == 0) {
+                    continue;
+                }
+                int key;
+                if (cell == tableMove) {
+                    key = Integer.MAX_VALUE;
+                } else if (cell == killer[0]) {
+                    key = Integer.MAX_VALUE - 1;
+                } else if (cell == killer[1]) {
+                    key = Integer.MAX_VALUE - 2;
+                } else {
+                    key = Math.min(history[side][cell], Integer.MAX_VALUE / 2) + geometry.cellLines[cell].length;
+                }
+                moveList[count++] = (long) -key << 32 | cell;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Only won and lost scores depend on the distance from the root, see
+     * {@link AI#miniMax(Field, int, int, int, int, boolean, Mark, TranspositionTable)}.
+     */
+    private static int toTableScore(int score, int ply) {
+        return score >= DECISIVE ? score + ply : score <= -DECISIVE ? score - ply : score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        return score >= DECISIVE ? score - ply : score <= -DECISIVE ? score + ply : score;
+    }
+}
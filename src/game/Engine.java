@@ -0,0 +1,17 @@
+package game;
+
+/**
+ * An AI player. Implementations are safe to use from many threads at once: every call works on
+ * its own copy of the position and keeps no state of the game between calls.
+ */
+public interface Engine {
+
+    /**
+     * Computes the move for the side to move.
+     * A search can be cancelled by interrupting the calling thread, it then throws a
+     * {@link java.util.concurrent.CancellationException}.
+     * @param position the position, not changed.
+     * @return {row, column} of the move, {-1, -1} if the game is over.
+     */
+    int[] move(Position position);
+}
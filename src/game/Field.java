@@ -1,31 +1,144 @@
 package game;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
-import java.util.stream.IntStream;
 
 import static game.Mark.*;
 
 /**
- * Resembles an instance of the game.
+ * Resembles an instance of the game: a board of rows x columns cells on which
+ * {@code winLength} marks in a row (horizontally, vertically or diagonally) win.
+ * The classic game is the default 3x3 board with 3 in a row.
+ *
+ * The board is stored as two bitboards, one for each mark. Bit {@code row * columns + column}
+ * is set if the cell is occupied by that mark. Boards with more than 64 cells use several words.
+ * The winner is determined incrementally in {@link #setMark(int, Mark)} by counting the run of
+ * marks through the placed cell, so checking for a win never scans the whole board.
  */
 public class Field {
 
-    private char[][] field = {{' ', ' ', ' '}, {' ', ' ', ' '}, {' ', ' ', ' '}};
-    Scanner scan = new Scanner(System.in);
+    private static final int[][] DIRECTIONS = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };
+
+    private final Geometry geometry;
+    private final int rows;
+    private final int columns;
+    private final int winLength;
+    private final long[] xBits;
+    private final long[] oBits;
+    private int marks;
+
+    /**
+     * Mark that has {@link #winLength} in a row, {@link Mark#BLANK} if there is none yet.
+     */
+    private Mark winner = BLANK;
+
+    /**
+     * Cell whose placement completed the win. Clearing it again (as the search does) restores the
+     * previous state without a rescan. -1 if unknown, e.g. marks were placed after the win.
+     */
+    private int winningCell = -1;
+
+    /**
+     * Zobrist hash of the board under each symmetry of the board, updated incrementally in
+     * {@link #setMark(int, Mark)}.
+     */
+    private final long[] hashes;
+
+    /**
+     * Null until the first listener is added, so fields used by the search don't pay for events.
+     */
+    private List<FieldListener> listeners;
+
+    /**
+     * Console input of {@link #getCoordinates()}. Created on first use and shared by all fields, boards that are
+     * never played on the console don't open a reader, and two readers on {@link System#in} can't steal each
+     * other's buffered input.
+     */
+    private static final class Console {
+        static final Scanner scan = new Scanner(System.in);
+    }
+
+    /**
+     * Creates the classic 3x3 board.
+     */
+    public Field() {
+        this(3, 3, 3);
+    }
+
+    /**
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param winLength number of marks in a row needed to win.
+     */
+    public Field(int rows, int columns, int winLength) {
+        this.geometry = Geometry.of(rows, columns, winLength);
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.xBits = new long[geometry.words];
+        this.oBits = new long[geometry.words];
+        this.hashes = new long[geometry.symmetries.length];
+        Arrays.fill(hashes, geometry.baseKey);
+    }
+
+    private Field(Field other) {
+        this.geometry = other.geometry;
+        this.rows = other.rows;
+        this.columns = other.columns;
+        this.winLength = other.winLength;
+        this.xBits = other.xBits.clone();
+        this.oBits = other.oBits.clone();
+        this.hashes = other.hashes.clone();
+        this.marks = other.marks;
+        this.winner = other.winner;
+        this.winningCell = other.winningCell;
+    }
+
+    /**
+     * Removes all marks, so the field can be reused for a new game. Listeners are kept,
+     * no events are fired.
+     */
+    public void clear() {
+        Arrays.fill(xBits, 0);
+        Arrays.fill(oBits, 0);
+        Arrays.fill(hashes, geometry.baseKey);
+        marks = 0;
+        winner = BLANK;
+        winningCell = -1;
+    }
+
+    /**
+     * @return an independent copy of the board, e.g. for a search on another thread.
+     */
+    public Field copy() {
+        return new Field(this);
+    }
 
     /**
      * Prints the field in its current state.
      */
     public void print() {
-        System.out.println("---------");
-        for (char[] row : field) {
-            StringBuilder rowBuilder = new StringBuilder("| "); // Outer border.
-            for (char cell : row) {
-                rowBuilder.append(cell).append(BLANK); // Append the cell + whitespace.
+        System.out.print(this);
+    }
+
+    /**
+     * @return the field in its current state with a border, one line per row.
+     */
+    @Override
+    public String toString() {
+        String border = "-".repeat(2 * columns + 3);
+        String newLine = System.lineSeparator();
+        StringBuilder builder = new StringBuilder(border).append(newLine);
+        for (int row = 0; row < rows; row++) {
+            builder.append("| "); // Outer border.
+            for (int column = 0; column < columns; column++) {
+                builder.append(getMark(row, column)).append(BLANK); // Append the cell + whitespace.
             }
-            System.out.println(rowBuilder.append('|')); // Outer border.
+            builder.append('|').append(newLine); // Outer border.
         }
-        System.out.println("---------");
+        return builder.append(border).append(newLine).toString();
     }
 
     /**
@@ -37,7 +150,7 @@ public class Field {
         int row = 0, column = 0;
         while (!gotInput) {
             System.out.print("Enter the coordinates: ");
-            String[] strCoords = scan.nextLine().trim().split(" ");
+            String[] strCoords = Console.scan.nextLine().trim().split(" ");
             try {
                 row = Integer.parseInt(strCoords[0]);
                 column = Integer.parseInt(strCoords[1]);
@@ -46,8 +159,8 @@ public class Field {
             } catch (IndexOutOfBoundsException e) {
                 System.out.println("Input should contain 2 numbers with a space in between!");
             }
-            if (row > 3 || row < 1 || column > 3 || column < 1) {
-                System.out.println("Coordinates should be from 1 to 3!");
+            if (row > rows || row < 1 || column > columns || column < 1) {
+                System.out.println("Coordinates should be from 1 to " + rows + " (row) and 1 to " + columns + " (column)!");
                 continue;
             }
             if (getMark(row - 1, column - 1) != BLANK) {
@@ -60,53 +173,13 @@ public class Field {
     }
 
     /**
-     * This method contains the logic to determine if the win condition is met by the given mark.
-     *    2  3  5   Every cell on the game field has a prime number associated with it which is evaluated
-     *   *7 11 13*  in the following multiplication if the mark at this cell corresponds with the mark
-     *   17 19 23   given to the method otherwise the cell is valued as 1.
-     * Using the concept of Prime Factorization, we can then later determine if the given mark won, because
-     * all prime numbers in that row had to be multiplied to produce the 8 products obtainable by having a full row.
-     * For example having a full horizontal row in the middle (highlighted by *) would produce 1001 by multiplying
-     * 7 * 11 * 13.
-     * All possible products that would lead to a win: 30, 1001, 7429, 238, 627, 1495, 506, 935.
-     * @param c char of the mark that is checked.
-     * @return Products of the prime numbers in the 8 possible win conditions.
-     */
-    private int[] getPrimeProducts(char c) {
-        Mark m = c == 'X' ? X : O;
-        int[] primeNums = {2, 3, 5, 7, 11, 13, 17, 19, 23};
-        int[][] pf = { {1, 1, 1}, {1, 1, 1}, {1, 1, 1} };
-        // Iterate over the 9 prime numbers
-        for(int i = 0; i < 9; i++) {
-            // Iterate over the 3 possible rows
-            for (int j = 0; j < 3; j++) {
-                // Iterate over the 3 possible columns
-                for (int k = 0; k < 3; k++, i++) {
-                    if (getMark(j, k) == m) {
-                        pf[j][k] = primeNums[i];
-                    }
-                }
-            }
-        }
-        return new int[] {pf[0][0] * pf[0][1] * pf[0][2], pf[1][0] * pf[1][1] * pf[1][2],
-                pf[2][0] * pf[2][1] * pf[2][2], pf[0][0] * pf[1][0] * pf[2][0],
-                pf[0][1] * pf[1][1] * pf[2][1], pf[0][2] * pf[1][2] * pf[2][2],
-                pf[0][0] * pf[1][1] * pf[2][2], pf[0][2] * pf[1][1] * pf[2][0]};
-    }
-
-    /**
-     * Checks if the given mark won by evaluating the prime products from {@link #getPrimeProducts(char)}.
+     * Checks if the given mark won. The winner is kept up to date by {@link #setMark(int, Mark)},
+     * so this is constant time.
      * @param m mark which is checked.
      * @return true if the given has won.
      */
     public boolean hasWon(Mark m) {
-        // Stream for checking if the specified mark has met the win condition.
-        // If the mark has a full row of any kind, one of the products of prime numbers
-        // in a full row will match and the method returns true.
-        char c = m == X ? 'X' : 'O';
-        return IntStream.of(getPrimeProducts(c)).anyMatch
-                (x -> x == 30 || x == 1001 || x == 7429 || x == 238 ||
-                        x == 627 || x == 1495 || x == 935 || x == 506);
+        return m != BLANK && winner == m;
     }
 
     /**
@@ -116,24 +189,247 @@ public class Field {
     public String getGameState() {
         return hasWon(X) ? "X wins" :
                 hasWon(O) ? "O wins" :
-                        numOfMarks() != 9 ? "Game not finished" : "Draw";
+                        !isFull() ? "Game not finished" : "Draw";
     }
 
     /**
-     * Calls getGameState method but interprets it as boolean for ease of use.
+     * Interprets the game state as boolean for ease of use.
+     * Unlike {@link #getGameState()} this does not compare any Strings.
      * @return true if game is in a "Game Over" state.
      */
     public boolean isGameOver() {
-        return !getGameState().equals("Game not finished");
+        return winner != BLANK || isFull();
+    }
+
+    /**
+     * @return the mark that has won, {@link Mark#BLANK} if nobody has won (yet).
+     */
+    public Mark getWinner() {
+        return winner;
     }
 
     public void setMark(int row, int column, Mark mark) {
-        field[row][column] = mark.getMark();
+        setMark(row * columns + column, mark);
+    }
+
+    /**
+     * Places the mark on the given cell index ({@code row * columns + column}).
+     * Setting {@link Mark#BLANK} clears the cell.
+     */
+    public void setMark(int cell, Mark mark) {
+        Mark previous = getMark(cell);
+        if (previous == mark) {
+            return;
+        }
+        int word = cell >>> 6;
+        long bit = 1L << cell;
+        if (previous != BLANK) {
+            toggleHashes(cell, previous);
+            xBits[word] &= ~bit;
+            oBits[word] &= ~bit;
+            marks--;
+        }
+        if (mark != BLANK) {
+            toggleHashes(cell, mark);
+            (mark == X ? xBits : oBits)[word] |= bit;
+            marks++;
+        }
+
+        if (winner == BLANK) {
+            if (mark != BLANK && completesLine(cell, mark)) {
+                winner = mark;
+                winningCell = cell;
+            }
+        } else if (previous != BLANK && cell == winningCell) {
+            // Undoing the winning move.
+            winner = BLANK;
+            winningCell = -1;
+            if (mark != BLANK && completesLine(cell, mark)) {
+                winner = mark;
+                winningCell = cell;
+            }
+        } else {
+            // The board was changed after it was already won, which the game and the search never do.
+            rescanWinner();
+        }
+
+        if (listeners != null && mark != BLANK) {
+            fireMarkPlaced(cell, mark);
+        }
+    }
+
+    /**
+     * Registers a listener that is notified when a mark is placed, the turn changes or the game ends.
+     * @param listener listener to add.
+     */
+    public void addListener(FieldListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(FieldListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void fireMarkPlaced(int cell, Mark mark) {
+        int row = cell / columns;
+        int column = cell % columns;
+        for (FieldListener listener : listeners) {
+            listener.markPlaced(this, row, column, mark);
+        }
+        if (isGameOver()) {
+            for (FieldListener listener : listeners) {
+                listener.gameOver(this, winner);
+            }
+        } else {
+            Mark next = isXsTurn() ? X : O;
+            for (FieldListener listener : listeners) {
+                listener.turnChanged(this, next);
+            }
+        }
+    }
+
+    /**
+     * Counts the marks in a row through the given cell in all 4 directions.
+     * @return true if one of the runs is at least {@link #winLength} long.
+     */
+    private boolean completesLine(int cell, Mark mark) {
+        long[] bits = mark == X ? xBits : oBits;
+        int row = cell / columns;
+        int col = cell % columns;
+        for (int[] direction : DIRECTIONS) {
+            int run = 1
+                    + countRun(bits, row, col, direction[0], direction[1])
+                    + countRun(bits, row, col, -direction[0], -direction[1]);
+            if (run >= winLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int countRun(long[] bits, int row, int col, int dRow, int dCol) {
+        int run = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (run < winLength && r >= 0 && r < rows && c >= 0 && c < columns) {
+            int cell = r * columns + c;
+            if ((bits[cell >>> 6] & (1L << cell)) == 0) {
+                break;
+            }
+            run++;
+            r += dRow;
+            c += dCol;
+        }
+        return run;
+    }
+
+    private void rescanWinner() {
+        winner = BLANK;
+        winningCell = -1;
+        for (int cell = 0; cell < geometry.cells && winner == BLANK; cell++) {
+            Mark mark = getMark(cell);
+            if (mark != BLANK && completesLine(cell, mark)) {
+                winner = mark;
+            }
+        }
+    }
+
+    private void toggleHashes(int cell, Mark mark) {
+        long[] zobrist = mark == X ? geometry.zobristX : geometry.zobristO;
+        int[][] symmetries = geometry.symmetries;
+        for (int s = 0; s < hashes.length; s++) {
+            hashes[s] ^= zobrist[symmetries[s][cell]];
+        }
+    }
+
+    /**
+     * Key of the position that is identical for all rotations and reflections of the board:
+     * the smallest of the symmetric Zobrist hashes. Boards of different shapes never share keys.
+     * @return canonical 64-bit key.
+     */
+    public long getCanonicalKey() {
+        long key = hashes[0];
+        for (int s = 1; s < hashes.length; s++) {
+            key = Math.min(key, hashes[s]);
+        }
+        return key;
+    }
+
+    /**
+     * @return index of the symmetry whose hash is {@link #getCanonicalKey()}, to store moves
+     * in the orientation of the canonical position.
+     */
+    int getCanonicalSymmetry() {
+        int symmetry = 0;
+        for (int s = 1; s < hashes.length; s++) {
+            if (hashes[s] < hashes[symmetry]) {
+                symmetry = s;
+            }
+        }
+        return symmetry;
+    }
+
+    Geometry getGeometry() {
+        return geometry;
     }
 
     public Mark getMark(int row, int column) {
-        return field[row][column] == X.getMark() ? X :
-                field[row][column] == O.getMark() ? O : BLANK;
+        return getMark(row * columns + column);
+    }
+
+    public Mark getMark(int cell) {
+        long bit = 1L << cell;
+        return (xBits[cell >>> 6] & bit) != 0 ? X :
+                (oBits[cell >>> 6] & bit) != 0 ? O : BLANK;
+    }
+
+    /**
+     * Returns the bitboard of the given mark, for boards of up to 64 cells.
+     * For {@link Mark#BLANK} this is the set of free cells.
+     */
+    public long getBits(Mark m) {
+        return m == X ? xBits[0] : m == O ? oBits[0] : getFreeCells();
+    }
+
+    /**
+     * Free cells as bitmask, for boards of up to 64 cells. Iterate with
+     * {@code for (long free = getFreeCells(); free != 0; free &= free - 1)} and
+     * {@link Long#numberOfTrailingZeros(long)} to get the cell index.
+     * Use {@link #nextFreeCell(int)} for boards of any size.
+     */
+    public long getFreeCells() {
+        return ~(xBits[0] | oBits[0]) & (geometry.words == 1 ? geometry.lastWordMask : -1L);
+    }
+
+    /**
+     * Move generator for boards of any size:
+     * {@code for (int cell = nextFreeCell(0); cell >= 0; cell = nextFreeCell(cell + 1))}.
+     * @param from first cell index to look at.
+     * @return index of the next free cell at or after {@code from}, -1 if there is none.
+     */
+    public int nextFreeCell(int from) {
+        int word = from >>> 6;
+        if (word >= geometry.words) {
+            return -1;
+        }
+        long free = ~(xBits[word] | oBits[word]) & (-1L << from);
+        while (true) {
+            if (word == geometry.words - 1) {
+                free &= geometry.lastWordMask;
+            }
+            if (free != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(free);
+            }
+            if (++word == geometry.words) {
+                return -1;
+            }
+            free = ~(xBits[word] | oBits[word]);
+        }
     }
 
     /**
@@ -141,22 +437,17 @@ public class Field {
      * @return number of Xs and Os.
      */
     public int numOfMarks() {
-        int countX = 0, countO = 0;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (getMark(i, j) == X) {
-                    countX++;
-                } else if (getMark(i, j) == O) {
-                    countO++;
-                }
-            }
-        }
-        return countX + countO;
+        return marks;
+    }
+
+    public boolean isFull() {
+        return marks == geometry.cells;
     }
 
     // Checks if the given cell is a valid move (must be blank).
     public boolean available(int i, int j) {
-        return field[i][j] == BLANK.getMark();
+        int cell = i * columns + j;
+        return ((xBits[cell >>> 6] | oBits[cell >>> 6]) & (1L << cell)) == 0;
     }
 
     /**
@@ -166,5 +457,30 @@ public class Field {
     public boolean isXsTurn() {
         return numOfMarks() % 2 == 0;
     }
-}
 
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /**
+     * @return number of cells on the board.
+     */
+    public int getCells() {
+        return geometry.cells;
+    }
+
+    /**
+     * @return true for the classic 3x3 board with 3 in a row.
+     */
+    public boolean isClassic() {
+        return rows == 3 && columns == 3 && winLength == 3;
+    }
+}
@@ -0,0 +1,35 @@
+package game;
+
+/**
+ * Receives the events of a {@link Field}, see {@link Field#addListener(FieldListener)}.
+ * All methods are called synchronously on the thread that changed the field.
+ * Copies made with {@link Field#copy()} (e.g. for the AI search) have no listeners.
+ */
+public interface FieldListener {
+
+    /**
+     * A mark was placed on an empty cell.
+     * @param field the field that changed.
+     * @param row row of the cell.
+     * @param column column of the cell.
+     * @param mark the placed mark.
+     */
+    default void markPlaced(Field field, int row, int column, Mark mark) {
+    }
+
+    /**
+     * The game goes on and the other mark is on turn now.
+     * @param field the field that changed.
+     * @param mark mark that has to make the next move.
+     */
+    default void turnChanged(Field field, Mark mark) {
+    }
+
+    /**
+     * The last placed mark ended the game.
+     * @param field the field that changed.
+     * @param winner mark that won, {@link Mark#BLANK} for a draw.
+     */
+    default void gameOver(Field field, Mark winner) {
+    }
+}
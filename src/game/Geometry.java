@@ -0,0 +1,161 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything about a board that only depends on its dimensions and win length:
+ * symmetries, Zobrist keys and the lines a player can win with. Shared by all {@link Field}s of the same shape.
+ */
+final class Geometry {
+
+    private static final Map<Long, Geometry> CACHE = new ConcurrentHashMap<>();
+
+    final int rows;
+    final int columns;
+    final int winLength;
+    final int cells;
+    final int words;
+
+    /**
+     * Valid bits of the last bitboard word (boards are not always a multiple of 64 cells).
+     */
+    final long lastWordMask;
+
+    /**
+     * {@code symmetries[s][cell]} is the cell that {@code cell} is mapped to by symmetry s.
+     * Square boards have 8 symmetries (rotations and reflections), rectangular boards 4.
+     */
+    final int[][] symmetries;
+
+    /**
+     * {@code inverse[s][symmetries[s][cell]] == cell}.
+     */
+    final int[][] inverse;
+
+    /**
+     * Number of lines of winLength cells (in all four directions) that fit on the board.
+     */
+    final int lines;
+
+    /**
+     * {@code cellLines[cell]} are the indices of the lines that contain the cell.
+     */
+    final int[][] cellLines;
+
+    /**
+     * {@code neighbours[cell]} are the cells at most {@link #NEIGHBOUR_DISTANCE} rows and columns away.
+     */
+    final int[][] neighbours;
+    static final int NEIGHBOUR_DISTANCE = 2;
+
+    final long[] zobristX;
+    final long[] zobristO;
+
+    /**
+     * Hash of the empty board, so boards of different shapes never share keys.
+     */
+    final long baseKey;
+
+    private Geometry(int rows, int columns, int winLength) {
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.cells = rows * columns;
+        this.words = (cells + 63) >>> 6;
+        this.lastWordMask = cells % 64 == 0 ? -1L : (1L << (cells % 64)) - 1;
+
+        int r = rows - 1;
+        int c = columns - 1;
+        symmetries = new int[rows == columns ? 8 : 4][cells];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                int cell = row * columns + col;
+                symmetries[0][cell] = row * columns + col;             // Identity
+                symmetries[1][cell] = (r - row) * columns + (c - col); // Rotate 180
+                symmetries[2][cell] = row * columns + (c - col);       // Mirror horizontally
+                symmetries[3][cell] = (r - row) * columns + col;       // Mirror vertically
+                if (rows == columns) {
+                    symmetries[4][cell] = col * columns + (r - row);   // Rotate 90
+                    symmetries[5][cell] = (c - col) * columns + row;   // Rotate 270
+                    symmetries[6][cell] = col * columns + row;         // Main diagonal
+                    symmetries[7][cell] = (c - col) * columns + (r - row); // Anti diagonal
+                }
+            }
+        }
+
+        inverse = new int[symmetries.length][cells];
+        for (int s = 0; s < symmetries.length; s++) {
+            for (int cell = 0; cell < cells; cell++) {
+                inverse[s][symmetries[s][cell]] = cell;
+            }
+        }
+
+        int[][] directions = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };
+        int[] lineCount = new int[cells];
+        int[][] linesOfCell = new int[cells][4 * winLength];
+        int line = 0;
+        for (int[] d : directions) {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    int endRow = row + d[0] * (winLength - 1);
+                    int endCol = col + d[1] * (winLength - 1);
+                    if (endRow >= rows || endCol < 0 || endCol >= columns) {
+                        continue;
+                    }
+                    for (int i = 0; i < winLength; i++) {
+                        int cell = (row + d[0] * i) * columns + col + d[1] * i;
+                        linesOfCell[cell][lineCount[cell]++] = line;
+                    }
+                    line++;
+                }
+            }
+        }
+        lines = line;
+        cellLines = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            cellLines[cell] = Arrays.copyOf(linesOfCell[cell], lineCount[cell]);
+        }
+
+        neighbours = new int[cells][];
+        int[] near = new int[(2 * NEIGHBOUR_DISTANCE + 1) * (2 * NEIGHBOUR_DISTANCE + 1)];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                int count = 0;
+                int lastRow = Math.min(r, row + NEIGHBOUR_DISTANCE);
+                int lastCol = Math.min(c, col + NEIGHBOUR_DISTANCE);
+                for (int nRow = Math.max(0, row - NEIGHBOUR_DISTANCE); nRow <= lastRow; nRow++) {
+                    for (int nCol = Math.max(0, col - NEIGHBOUR_DISTANCE); nCol <= lastCol; nCol++) {
+                        if (nRow != row || nCol != col) {
+                            near[count++] = nRow * columns + nCol;
+                        }
+                    }
+                }
+                neighbours[row * columns + col] = Arrays.copyOf(near, count);
+            }
+        }
+
+        // Fixed seed per shape so keys are stable between runs.
+        Random random = new Random(key(rows, columns, winLength) * 0x5EEDL);
+        zobristX = new long[cells];
+        zobristO = new long[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            zobristX[cell] = random.nextLong();
+            zobristO[cell] = random.nextLong();
+        }
+        baseKey = random.nextLong();
+    }
+
+    static Geometry of(int rows, int columns, int winLength) {
+        if (rows < 1 || columns < 1 || winLength < 1 || winLength > Math.max(rows, columns)) {
+            throw new IllegalArgumentException("Unsupported board " + rows + "x" + columns + " with " + winLength + " in a row.");
+        }
+        return CACHE.computeIfAbsent(key(rows, columns, winLength), k -> new Geometry(rows, columns, winLength));
+    }
+
+    private static long key(int rows, int columns, int winLength) {
+        return (long) rows << 40 | (long) columns << 20 | winLength;
+    }
+}
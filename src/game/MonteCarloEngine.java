@@ -0,0 +1,528 @@
+package game;
+
+import log.GameLog;
+import log.Level;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monte Carlo tree search (UCT) {@link Engine}, for boards too large to be searched to the end.
+ * Instead of scoring positions it plays random games (playouts) from them and prefers the moves
+ * that won most often, balancing promising and rarely tried moves with the UCB1 formula.
+ *
+ * The search is root-parallel: every thread of the common {@link ForkJoinPool} grows its own tree
+ * from the same position, at the end the visits of the root moves are added up. The trees are
+ * never shared, so no locks or virtual losses are needed. Playouts run on a compact bitboard
+ * that is allocated once per thread and reset for every playout, so they allocate nothing.
+ *
+ * The search stops after a number of playouts or after a time budget, whichever comes first.
+ * {@link #search(Position)} also reports the playouts per second, to trade strength against latency.
+ */
+public final class MonteCarloEngine implements Engine {
+
+    /**
+     * Exploration constant of UCB1. Scores are between 0 and 1, sqrt(2) is the textbook value.
+     */
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    /**
+     * Memory for the trees of one search, shared out evenly between the threads. Once a tree has used
+     * up its share, later playouts only update the existing nodes.
+     */
+    private static final long MAX_TREE_BYTES = 256L << 20;
+
+    /**
+     * Estimated size of a {@link Node} without its arrays, and of an array without its elements.
+     */
+    private static final int NODE_BYTES = 64;
+    private static final int ARRAY_BYTES = 16;
+
+    /**
+     * Playouts between two checks of the time budget and for cancellation.
+     */
+    private static final int CHECK_INTERVAL = 64;
+
+    private final long playouts;
+    private final long budgetNanos;
+    private final int threads;
+
+    private final LongAdder totalPlayouts = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * @param playouts maximum number of playouts per move over all threads, {@link Long#MAX_VALUE} for no limit.
+     * @param budgetMillis maximum time per move, {@link Long#MAX_VALUE} for no limit.
+     * @param threads number of parallel trees, e.g. the number of cores.
+     */
+    public MonteCarloEngine(long playouts, long budgetMillis, int threads) {
+        if (playouts == Long.MAX_VALUE && budgetMillis == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Either the playouts or the time has to be limited.");
+        }
+        this.playouts = playouts;
+        this.budgetNanos = budgetMillis == Long.MAX_VALUE ? Long.MAX_VALUE : budgetMillis * 1_000_000;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return an engine with a time budget per move that uses all cores.
+     */
+    public static MonteCarloEngine withTimeBudget(long millis) {
+        return new MonteCarloEngine(Long.MAX_VALUE, millis, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return an engine with a fixed number of playouts per move that uses all cores.
+     */
+    public static MonteCarloEngine withPlayouts(long playouts) {
+        return new MonteCarloEngine(playouts, Long.MAX_VALUE, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public int[] move(Position position) {
+        Result result = search(position);
+        return new int[] {result.getRow(), result.getColumn()};
+    }
+
+    /**
+     * Searches the position, see the class documentation.
+     * @return the move with the most visits and how the search went.
+     */
+    public Result search(Position position) {
+        long start = System.nanoTime();
+        Field field = position.toField();
+        int columns = field.getColumns();
+        if (field.isGameOver()) {
+            return new Result(-1, -1, 0, 0, 0);
+        }
+        // Moves that win at once or stop the opponent from winning at once need no search, and
+        // random playouts are bad at seeing them on large boards.
+        int forced = forcedMove(field);
+        if (forced >= 0) {
+            return new Result(forced / columns, forced % columns, 0, System.nanoTime() - start, 0);
+        }
+
+        Board root = new Board(field);
+        long deadline = budgetNanos == Long.MAX_VALUE ? Long.MAX_VALUE : start + budgetNanos;
+        Thread caller = Thread.currentThread();
+        List<TreeSearch> searches = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            long share = playouts == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : playouts / threads + (i < playouts % threads ? 1 : 0);
+            searches.add(new TreeSearch(root, share, deadline, caller, MAX_TREE_BYTES / threads));
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(searches);
+                return null;
+            }
+        });
+
+        // Root parallelization: add up the root statistics of all trees.
+        long[] visits = new long[field.getCells()];
+        long[] scores = new long[field.getCells()];
+        long played = 0;
+        for (TreeSearch search : searches) {
+            Node tree = search.getRawResult();
+            played += tree.visits;
+            for (int i = 0; i < tree.childCount; i++) {
+                Node child = tree.children[i];
+                visits[child.move] += child.visits;
+                scores[child.move] += child.score;
+            }
+        }
+        int best = root.free[0];
+        for (int i = 0; i < root.freeCount; i++) {
+            int cell = root.free[i];
+            if (visits[cell] > visits[best]) {
+                best = cell;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        totalPlayouts.add(played);
+        totalNanos.add(nanos);
+        double winRate = visits[best] == 0 ? 0 : scores[best] / (2.0 * visits[best]);
+        Result result = new Result(best / columns, best % columns, played, nanos, winRate);
+        if (GameLog.isEnabled(Level.DEBUG)) {
+            GameLog.log(Level.DEBUG, "MCTS playouts=" + played + " playouts/s=" + (long) result.getPlayoutsPerSecond()
+                    + " winRate=" + String.format("%.3f", winRate));
+        }
+        return result;
+    }
+
+    /**
+     * @return a cell that wins at once, otherwise the only cell that stops an immediate win of the
+     * opponent, -1 if there is none of both.
+     */
+    private static int forcedMove(Field field) {
+        Mark mark = field.isXsTurn() ? Mark.X : Mark.O;
+        Mark opponent = mark == Mark.X ? Mark.O : Mark.X;
+        int block = -1;
+        for (int cell = field.nextFreeCell(0); cell >= 0; cell = field.nextFreeCell(cell + 1)) {
+            field.setMark(cell, mark);
+            boolean wins = field.hasWon(mark);
+            field.setMark(cell, opponent);
+            boolean loses = field.hasWon(opponent);
+            field.setMark(cell, Mark.BLANK);
+            if (wins) {
+                return cell;
+            }
+            if (loses && block < 0) {
+                block = cell;
+            }
+        }
+        return block;
+    }
+
+    /**
+     * @return playouts per second over all moves so far.
+     */
+    public double getPlayoutsPerSecond() {
+        long nanos = totalNanos.sum();
+        return nanos == 0 ? 0 : totalPlayouts.sum() * 1e9 / nanos;
+    }
+
+    public long getTotalPlayouts() {
+        return totalPlayouts.sum();
+    }
+
+    /**
+     * Outcome of {@link #search(Position)}.
+     */
+    public static final class Result {
+
+        private final int row;
+        private final int column;
+        private final long playouts;
+        private final long nanos;
+        private final double winRate;
+
+        Result(int row, int column, long playouts, long nanos, double winRate) {
+            this.row = row;
+            this.column = column;
+            this.playouts = playouts;
+            this.nanos = nanos;
+            this.winRate = winRate;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        /**
+         * @return number of playouts over all threads, 0 if the move was forced.
+         */
+        public long getPlayouts() {
+            return playouts;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getPlayoutsPerSecond() {
+            return nanos == 0 ? 0 : playouts * 1e9 / nanos;
+        }
+
+        /**
+         * @return share of the playouts through the chosen move that were won, draws count half.
+         */
+        public double getWinRate() {
+            return winRate;
+        }
+    }
+
+    /**
+     * Node of a search tree. Only used by the thread that owns the tree.
+     *
+     * Most nodes are leaves that are never expanded, so the arrays of the moves are only allocated by the
+     * first expansion, and the children grow as moves are tried. A leaf costs {@link #NODE_BYTES}
+     * whatever the size of the board.
+     */
+    private static final class Node {
+
+        /**
+         * Cell of the move that leads to this node, -1 for the root.
+         */
+        final int move;
+
+        /**
+         * Side that made the move: 0 for X, 1 for O.
+         */
+        final int player;
+
+        /**
+         * Result of the game if the move ended it: {@link Board#DRAW}, 0 or 1 for the winner, -2 if it goes on.
+         */
+        final int outcome;
+
+        Node[] children;
+        int childCount;
+
+        /**
+         * Moves that have no node yet, null until the first expansion.
+         */
+        int[] untried;
+        int untriedCount;
+
+        long visits;
+
+        /**
+         * 2 per won and 1 per drawn playout, from the point of view of {@link #player}.
+         */
+        long score;
+
+        Node(int move, int player, int outcome, Board board) {
+            this.move = move;
+            this.player = player;
+            this.outcome = outcome;
+            if (outcome == Board.ONGOING) {
+                untriedCount = board.freeCount;
+            }
+        }
+
+        Node select() {
+            double logVisits = Math.log(visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < childCount; i++) {
+                Node child = children[i];
+                double value = child.score / (2.0 * child.visits) + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Grows one tree from the root position.
+     */
+    private static final class TreeSearch extends RecursiveTask<Node> {
+
+        private final Board root;
+        private final long playouts;
+        private final long deadline;
+        private final Thread caller;
+        private final long maxBytes;
+
+        /**
+         * Estimated size of the tree so far.
+         */
+        private long bytes;
+
+        TreeSearch(Board root, long playouts, long deadline, Thread caller, long maxBytes) {
+            this.root = root;
+            this.playouts = playouts;
+            this.deadline = deadline;
+            this.caller = caller;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        protected Node compute() {
+            Board board = new Board(root);
+            SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+            Node[] path = new Node[root.freeCount + 1];
+            Node tree = new Node(-1, 1 - root.toMove, Board.ONGOING, root);
+            bytes = NODE_BYTES;
+            for (long playout = 0; playout < playouts; playout++) {
+                if (playout % CHECK_INTERVAL == 0) {
+                    if (caller.isInterrupted()) {
+                        throw new CancellationException("AI search cancelled.");
+                    }
+                    if (System.nanoTime() >= deadline && playout > 0) {
+                        break;
+                    }
+                }
+                board.reset(root);
+                // Selection: follow the best children while all moves of a node have been tried.
+                Node node = tree;
+                int length = 0;
+                path[length++] = node;
+                while (node.outcome == Board.ONGOING && node.untriedCount == 0) {
+                    node = node.select();
+                    board.play(node.move);
+                    path[length++] = node;
+                }
+                // Expansion: add one untried move.
+                if (node.outcome == Board.ONGOING && bytes < maxBytes) {
+                    node = expand(node, board, random);
+                    path[length++] = node;
+                }
+                // Simulation: random moves until the game is over.
+                int outcome = node.outcome == Board.ONGOING ? board.playout(random) : node.outcome;
+                // Backpropagation.
+                for (int i = 0; i < length; i++) {
+                    Node visited = path[i];
+                    visited.visits++;
+                    visited.score += outcome == Board.DRAW ? 1 : outcome == visited.player ? 2 : 0;
+                }
+            }
+            return tree;
+        }
+
+        /**
+         * Adds the node of a random untried move of the node.
+         * @param board the position of the node, the move is played on it.
+         * @return the new child.
+         */
+        private Node expand(Node node, Board board, SplittableRandom random) {
+            if (node.untried == null) {
+                node.untried = Arrays.copyOf(board.free, board.freeCount);
+                node.children = new Node[Math.min(4, node.untriedCount)];
+                bytes += 2 * ARRAY_BYTES + 4L * (node.untried.length + node.children.length);
+            } else if (node.childCount == node.children.length) {
+                int length = Math.min(2 * node.childCount, node.childCount + node.untriedCount);
+                bytes += 4L * (length - node.children.length);
+                node.children = Arrays.copyOf(node.children, length);
+            }
+            int i = random.nextInt(node.untriedCount);
+            int cell = node.untried[i];
+            node.untried[i] = node.untried[--node.untriedCount];
+            int player = board.toMove;
+            int outcome = board.play(cell);
+            Node child = new Node(cell, player, outcome, board);
+            node.children[node.childCount++] = child;
+            bytes += NODE_BYTES;
+            return child;
+        }
+    }
+
+    /**
+     * Compact board for the playouts: one bitboard per mark and the list of free cells, so a random
+     * move and the win check need neither allocations nor a search for a free cell.
+     */
+    private static final class Board {
+
+        static final int ONGOING = -2;
+        static final int DRAW = -1;
+
+        private static final int[][] DIRECTIONS = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };
+
+        final int rows;
+        final int columns;
+        final int winLength;
+        final long[][] bits;
+        final int[] free;
+        final int[] freeIndex;
+        int freeCount;
+
+        /**
+         * 0 if X moves next, 1 for O.
+         */
+        int toMove;
+
+        Board(Field field) {
+            rows = field.getRows();
+            columns = field.getColumns();
+            winLength = field.getWinLength();
+            int cells = field.getCells();
+            bits = new long[2][(cells + 63) >>> 6];
+            free = new int[cells];
+            freeIndex = new int[cells];
+            for (int cell = 0; cell < cells; cell++) {
+                Mark mark = field.getMark(cell);
+                if (mark == Mark.BLANK) {
+                    freeIndex[cell] = freeCount;
+                    free[freeCount++] = cell;
+                } else {
+                    bits[mark == Mark.X ? 0 : 1][cell >>> 6] |= 1L << cell;
+                }
+            }
+            toMove = field.isXsTurn() ? 0 : 1;
+        }
+
+        Board(Board other) {
+            rows = other.rows;
+            columns = other.columns;
+            winLength = other.winLength;
+            bits = new long[2][other.bits[0].length];
+            free = new int[other.free.length];
+            freeIndex = new int[other.freeIndex.length];
+            reset(other);
+        }
+
+        void reset(Board other) {
+            System.arraycopy(other.bits[0], 0, bits[0], 0, bits[0].length);
+            System.arraycopy(other.bits[1], 0, bits[1], 0, bits[1].length);
+            System.arraycopy(other.free, 0, free, 0, other.freeCount);
+            System.arraycopy(other.freeIndex, 0, freeIndex, 0, freeIndex.length);
+            freeCount = other.freeCount;
+            toMove = other.toMove;
+        }
+
+        /**
+         * Places the mark of the side to move.
+         * @return the winner (0 or 1) if the move won, {@link #DRAW} if it filled the board, otherwise {@link #ONGOING}.
+         */
+        int play(int cell) {
+            int player = toMove;
+            bits[player][cell >>> 6] |= 1L << cell;
+            int index = freeIndex[cell];
+            int last = free[--freeCount];
+            free[index] = last;
+            freeIndex[last] = index;
+            toMove = 1 - player;
+            if (wins(player, cell)) {
+                return player;
+            }
+            return freeCount == 0 ? DRAW : ONGOING;
+        }
+
+        /**
+         * Plays random moves until the game is over.
+         * @return the winner (0 or 1) or {@link #DRAW}.
+         */
+        int playout(SplittableRandom random) {
+            while (true) {
+                int outcome = play(free[random.nextInt(freeCount)]);
+                if (outcome != ONGOING) {
+                    return outcome;
+                }
+            }
+        }
+
+        private boolean wins(int player, int cell) {
+            long[] marks = bits[player];
+            int row = cell / columns;
+            int column = cell % columns;
+            for (int[] direction : DIRECTIONS) {
+                int count = 1 + run(marks, row, column, direction[0], direction[1])
+                        + run(marks, row, column, -direction[0], -direction[1]);
+                if (count >= winLength) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int run(long[] marks, int row, int column, int rowStep, int columnStep) {
+            int count = 0;
+            for (int r = row + rowStep, c = column + columnStep;
+                 r >= 0 && r < rows && c >= 0 && c < columns && count < winLength; r += rowStep, c += columnStep) {
+                int cell = r * columns + c;
+                if ((marks[cell >>> 6] & 1L << cell) == 0) {
+                    break;
+                }
+                count++;
+            }
+            return count;
+        }
+    }
+}
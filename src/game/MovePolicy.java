@@ -0,0 +1,141 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * Picks a move from the {@link MoveScores} of a position. Every difficulty that is based on the
+ * minimax search is a policy, so all of them need a single search at most.
+ */
+public interface MovePolicy {
+
+    /**
+     * How much a policy needs to know about the moves.
+     */
+    enum Scores {
+        /**
+         * Only the legal moves, no search at all.
+         */
+        NONE,
+        /**
+         * The exact scores of the best moves, the other moves only need to be known as worse.
+         */
+        BEST,
+        /**
+         * The exact score of every move.
+         */
+        EXACT
+    }
+
+    /**
+     * @param scores the legal moves, scored as requested by {@link #requires()}.
+     * @param random random generator of the calling thread.
+     * @return cell index of the chosen move, -1 if there is no legal move.
+     */
+    int select(MoveScores scores, Random random);
+
+    /**
+     * @return scores needed by {@link #select(MoveScores, Random)}.
+     */
+    Scores requires();
+
+    /**
+     * "Easy": a random move.
+     */
+    MovePolicy RANDOM = new MovePolicy() {
+        @Override
+        public int select(MoveScores scores, Random random) {
+            return scores.getMoveCount() == 0 ? -1 : scores.getMove(random.nextInt(scores.getMoveCount()));
+        }
+
+        @Override
+        public Scores requires() {
+            return Scores.NONE;
+        }
+    };
+
+    /**
+     * "Hard": a random one of the best moves.
+     */
+    MovePolicy BEST = new MovePolicy() {
+        @Override
+        public int select(MoveScores scores, Random random) {
+            return pickBest(scores, random);
+        }
+
+        @Override
+        public Scores requires() {
+            return Scores.BEST;
+        }
+    };
+
+    /**
+     * "Medium": plays like "Hard" if it can win right away or would lose right after a bad move,
+     * otherwise randomly.
+     */
+    MovePolicy MEDIUM = new MovePolicy() {
+        @Override
+        public int select(MoveScores scores, Random random) {
+            int winScore = scores.getWinScore();
+            boolean critical = scores.getBestScore() == winScore;
+            for (int i = 0; i < scores.getMoveCount() && !critical; i++) {
+                critical = scores.getScore(scores.getMove(i)) == -2 * winScore;
+            }
+            return critical ? pickBest(scores, random) : RANDOM.select(scores, random);
+        }
+
+        @Override
+        public Scores requires() {
+            return Scores.EXACT;
+        }
+    };
+
+    /**
+     * Plays the best move, except for the given share of moves, which are random worse moves.
+     * @param blunderRate probability of a blunder, from 0 (always the best move) to 1.
+     */
+    static MovePolicy blunder(double blunderRate) {
+        if (blunderRate < 0 || blunderRate > 1) {
+            throw new IllegalArgumentException("The blunder rate has to be between 0 and 1: " + blunderRate);
+        }
+        return new MovePolicy() {
+            @Override
+            public int select(MoveScores scores, Random random) {
+                int worse = scores.getMoveCount() - scores.getBestMoveCount();
+                if (worse == 0 || random.nextDouble() >= blunderRate) {
+                    return pickBest(scores, random);
+                }
+                int pick = random.nextInt(worse);
+                for (int i = 0; i < scores.getMoveCount(); i++) {
+                    int cell = scores.getMove(i);
+                    if (scores.getScore(cell) != scores.getBestScore() && pick-- == 0) {
+                        return cell;
+                    }
+                }
+                throw new IllegalStateException("Unreachable");
+            }
+
+            @Override
+            public Scores requires() {
+                return Scores.BEST;
+            }
+        };
+    }
+
+    /**
+     * @return a random one of the moves with the best score, -1 if there is no legal move.
+     */
+    static int pickBest(MoveScores scores, Random random) {
+        int count = scores.getBestMoveCount();
+        if (count == 0) {
+            return -1;
+        }
+        int pick = random.nextInt(count);
+        for (int i = 0; i < scores.getMoveCount(); i++) {
+            int cell = scores.getMove(i);
+            if (scores.getScore(cell) == scores.getBestScore() && pick-- == 0) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+}
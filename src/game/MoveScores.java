@@ -0,0 +1,158 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Result of one search over all legal moves, see {@link AI#scoreMoves(Field, Mark, boolean)}.
+ * The difficulties are {@link MovePolicy policies} that pick a move from it.
+ *
+ * Scores follow the scheme of {@link AI}: a win in d plies after the move scores
+ * {@link #getWinScore()} - d, a loss {@code d - winScore} ({@code -2 * winScore} if the opponent
+ * wins right after the move) and a draw 0. Positions the search couldn't decide on larger boards
+ * have a heuristic score far away from both, see {@link #getOutcome(int)}.
+ * If the scores are not {@link #isExact() exact}, only the best moves have their exact score,
+ * every other move has an upper bound below the best score.
+ */
+public final class MoveScores {
+
+    /**
+     * Score of an occupied cell, or of a free cell the search didn't consider.
+     */
+    public static final int ILLEGAL = Integer.MIN_VALUE;
+
+    private final int[] scores;
+    private final int[] moves;
+    private final int bestScore;
+    private final int winScore;
+    private final int columns;
+    private final boolean exact;
+    private final boolean scored;
+
+    /**
+     * @param scores score per cell index, {@link #ILLEGAL} for occupied cells and cells that were not searched.
+     */
+    MoveScores(int[] scores, int winScore, int columns, boolean exact, boolean scored) {
+        this.scores = scores;
+        this.winScore = winScore;
+        this.columns = columns;
+        this.exact = exact;
+        this.scored = scored;
+        int count = 0;
+        int best = ILLEGAL;
+        for (int score : scores) {
+            if (score != ILLEGAL) {
+                count++;
+                best = Math.max(best, score);
+            }
+        }
+        this.moves = new int[count];
+        for (int cell = 0, i = 0; cell < scores.length; cell++) {
+            if (scores[cell] != ILLEGAL) {
+                moves[i++] = cell;
+            }
+        }
+        this.bestScore = best;
+    }
+
+    /**
+     * @return the legal moves of the field without scores (all 0), for policies that need none.
+     */
+    public static MoveScores unscored(Field field) {
+        int[] scores = new int[field.getCells()];
+        Arrays.fill(scores, ILLEGAL);
+        for (int cell = field.nextFreeCell(0); cell >= 0; cell = field.nextFreeCell(cell + 1)) {
+            scores[cell] = 0;
+        }
+        return new MoveScores(scores, 0, field.getColumns(), false, false);
+    }
+
+    /**
+     * @return score of the move on the cell, {@link #ILLEGAL} if the cell is occupied.
+     */
+    public int getScore(int cell) {
+        return scores[cell];
+    }
+
+    /**
+     * @return number of legal moves.
+     */
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    /**
+     * @param i index from 0 to {@link #getMoveCount()} - 1.
+     * @return cell index of the i-th legal move.
+     */
+    public int getMove(int i) {
+        return moves[i];
+    }
+
+    /**
+     * @return highest score, {@link #ILLEGAL} if there is no legal move.
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * @return number of moves with the best score.
+     */
+    public int getBestMoveCount() {
+        int count = 0;
+        for (int cell : moves) {
+            if (scores[cell] == bestScore) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return score of a win right after the move.
+     */
+    public int getWinScore() {
+        return winScore;
+    }
+
+    /**
+     * Decodes a score into the result of the game.
+     * @param cell cell index of a legal move.
+     * @return n if the move wins in n plies (counting the move itself), -n if it loses in n plies,
+     * 0 for a draw or if the search didn't reach the end of the game.
+     */
+    public int getOutcome(int cell) {
+        int score = scores[cell];
+        // A game ends after at most one ply per cell, so decided scores are at least this far from 0.
+        int decided = winScore - scores.length + 1;
+        if (score == -2 * winScore) {
+            return -2;
+        } else if (score >= decided) {
+            return winScore - score + 1;
+        } else if (score <= -decided) {
+            return -(score + winScore + 1);
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if every move has its exact score, false if only the best ones have.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return false if no search was made and all scores are 0.
+     */
+    public boolean isScored() {
+        return scored;
+    }
+
+    /**
+     * @return {row, column} of the cell.
+     */
+    public int[] toMove(int cell) {
+        return cell < 0 ? new int[] {-1, -1} : new int[] {cell / columns, cell % columns};
+    }
+}
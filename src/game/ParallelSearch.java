@@ -0,0 +1,106 @@
+package game;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Root-split parallel scoring of the moves of a position, used by {@link DeepeningSearch}.
+ * The moves at the root are divided between the threads of the common {@link ForkJoinPool}.
+ * Every task searches on its own copy of the {@link Field}, the transposition table is shared.
+ * Interrupting the calling thread cancels the search before the next root move is started.
+ */
+final class ParallelSearch {
+
+    private ParallelSearch() {
+    }
+
+    /**
+     * Searches a single root move.
+     */
+    interface RootSearch {
+
+        /**
+         * @param cell cell index of the root move.
+         * @param alpha lower bound of the search window, see {@link AI#rootAlpha(int, boolean)}.
+         * @return score of the move.
+         */
+        int score(int cell, int alpha);
+    }
+
+    /**
+     * Scores every move in one pass.
+     * If only the best moves need exact scores, the first move is searched alone to get a good bound
+     * (young brothers wait), after that the remaining moves are searched in parallel. Every task
+     * starts just below the best score found so far, so worse moves are cut off quickly while moves
+     * that tie with the best one still get their exact score.
+     * @param cells cell indices of the moves, the most promising first.
+     * @param scores receives the score per cell index.
+     * @param exact true to score every move with a full window.
+     * @param search searches one move, called from the pool threads.
+     */
+    static void scoreMoves(int[] cells, int[] scores, boolean exact, RootSearch search) {
+        if (cells.length == 0) {
+            return;
+        }
+        AtomicInteger best = new AtomicInteger(MoveScores.ILLEGAL);
+        Thread caller = Thread.currentThread();
+        int from = 0;
+        if (!exact) {
+            new ScoreTask(cells, 0, 1, scores, best, exact, search, caller).compute();
+            from = 1;
+        }
+        ForkJoinPool.commonPool().invoke(new ScoreTask(cells, from, cells.length, scores, best, exact, search, caller));
+    }
+
+    /**
+     * Pool threads are not interrupted together with the caller, so the tasks check the caller instead.
+     */
+    private static void checkCancelled(Thread caller) {
+        if (caller.isInterrupted()) {
+            throw new CancellationException("AI search cancelled.");
+        }
+    }
+
+    private static final class ScoreTask extends RecursiveAction {
+
+        private final int[] cells;
+        private final int from;
+        private final int to;
+        private final int[] scores;
+        private final AtomicInteger best;
+        private final boolean exact;
+        private final RootSearch search;
+        private final Thread caller;
+
+        ScoreTask(int[] cells, int from, int to, int[] scores, AtomicInteger best, boolean exact, RootSearch search,
+                  Thread caller) {
+            this.cells = cells;
+            this.from = from;
+            this.to = to;
+            this.scores = scores;
+            this.best = best;
+            this.exact = exact;
+            this.search = search;
+            this.caller = caller;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ScoreTask(cells, from, middle, scores, best, exact, search, caller),
+                        new ScoreTask(cells, middle, to, scores, best, exact, search, caller));
+                return;
+            }
+            if (from == to) {
+                return;
+            }
+            checkCancelled(caller);
+            int cell = cells[from];
+            scores[cell] = search.score(cell, AI.rootAlpha(best.get(), exact));
+            best.accumulateAndGet(scores[cell], Math::max);
+        }
+    }
+}
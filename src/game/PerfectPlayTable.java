@@ -0,0 +1,139 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * Perfect-play table for the classic 3x3 board.
+ * Every position reachable from the empty board is solved once (on first use) and stored in a
+ * primitive array indexed by the base-3 encoding of the board (X = 1, O = 2, 3^9 entries).
+ *
+ * Each entry packs the set of best moves (bits 0-8, one bit per cell) and the score for the side
+ * to move (bits 16-23, signed). Scores follow the same scheme as {@link AI}: a win in d plies
+ * scores 10 - d, a loss in d plies scores d - 10 and a draw scores 0. So the fastest win and the
+ * slowest loss are preferred.
+ */
+final class PerfectPlayTable {
+
+    private static final int CELLS = 9;
+    private static final int FULL = (1 << CELLS) - 1;
+    private static final int STATES = 19683; // 3^9
+    private static final int SOLVED = 1 << 31;
+    private static final int MOVES_MASK = FULL;
+
+    /**
+     * All 8 possible win conditions as bitmasks: 3 rows, 3 columns and 2 diagonals.
+     */
+    private static final int[] LINE_MASKS = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000,
+            0b001_001_001, 0b010_010_010, 0b100_100_100,
+            0b100_010_001, 0b001_010_100
+    };
+
+    /**
+     * Base-3 value of every 9-bit mask, so a position index is {@code BASE3[x] + 2 * BASE3[o]}.
+     */
+    private static final int[] BASE3 = new int[1 << CELLS];
+
+    private static final int[] TABLE = new int[STATES];
+
+    static {
+        for (int mask = 0; mask < BASE3.length; mask++) {
+            int value = 0;
+            for (int cell = CELLS - 1; cell >= 0; cell--) {
+                value = value * 3 + ((mask >> cell) & 1);
+            }
+            BASE3[mask] = value;
+        }
+        solve(0, 0);
+    }
+
+    private PerfectPlayTable() {
+    }
+
+    static int index(int xBits, int oBits) {
+        return BASE3[xBits] + 2 * BASE3[oBits];
+    }
+
+    /**
+     * @param field a {@link Field#isClassic() classic} 3x3 board.
+     */
+    private static int index(Field field) {
+        return index((int) field.getBits(Mark.X), (int) field.getBits(Mark.O));
+    }
+
+    /**
+     * @return bitmask of all optimal moves for the side to move, 0 if the game is over.
+     */
+    static int bestMoves(Field field) {
+        return TABLE[index(field)] & MOVES_MASK;
+    }
+
+    /**
+     * @return score of the position for the side to move.
+     */
+    static int score(Field field) {
+        return (byte) (TABLE[index(field)] >> 16);
+    }
+
+    /**
+     * Picks one of the optimal moves at random, so equally good moves (e.g. the 4 corners
+     * or any cell on the empty board) are all played.
+     * @return cell index of the move, -1 if the game is over.
+     */
+    static int pickMove(Field field, Random random) {
+        int moves = bestMoves(field);
+        if (moves == 0) {
+            return -1;
+        }
+        for (int skip = random.nextInt(Integer.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Integer.numberOfTrailingZeros(moves);
+    }
+
+    /**
+     * Negamax over the bitboards, memoized in {@link #TABLE}.
+     * @return score of the position for the side to move.
+     */
+    private static int solve(int xBits, int oBits) {
+        int index = index(xBits, oBits);
+        if ((TABLE[index] & SOLVED) != 0) {
+            return (byte) (TABLE[index] >> 16);
+        }
+        boolean xToMove = Integer.bitCount(xBits) == Integer.bitCount(oBits);
+        int opponentBits = xToMove ? oBits : xBits;
+
+        int score;
+        int bestMoves = 0;
+        if (isWin(opponentBits)) {
+            score = -10; // The previous move won, so the side to move has lost.
+        } else if ((xBits | oBits) == FULL) {
+            score = 0;
+        } else {
+            score = Integer.MIN_VALUE;
+            for (int free = ~(xBits | oBits) & FULL; free != 0; free &= free - 1) {
+                int bit = free & -free;
+                int child = xToMove ? solve(xBits | bit, oBits) : solve(xBits, oBits | bit);
+                // Flip perspective and move the result one ply further away, i.e. one step towards 0.
+                int moveScore = -child + Integer.signum(child);
+                if (moveScore > score) {
+                    score = moveScore;
+                    bestMoves = bit;
+                } else if (moveScore == score) {
+                    bestMoves |= bit;
+                }
+            }
+        }
+        TABLE[index] = SOLVED | (score & 0xFF) << 16 | bestMoves;
+        return score;
+    }
+
+    private static boolean isWin(int bits) {
+        for (int line : LINE_MASKS) {
+            if ((bits & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,140 @@
+package game;
+
+import java.util.Arrays;
+
+import static game.Mark.*;
+
+/**
+ * Immutable snapshot of a game: the board and its marks.
+ * Unlike a {@link Field} it can be handed to other threads freely, e.g. to an {@link Engine}
+ * that is used by many games at once.
+ */
+public final class Position {
+
+    private final int rows;
+    private final int columns;
+    private final int winLength;
+    private final long[] xBits;
+    private final long[] oBits;
+
+    private Position(int rows, int columns, int winLength, long[] xBits, long[] oBits) {
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.xBits = xBits;
+        this.oBits = oBits;
+    }
+
+    /**
+     * @return the current position of the field. Later changes of the field don't affect it.
+     */
+    public static Position of(Field field) {
+        int cells = field.getCells();
+        long[] xBits = new long[(cells + 63) >>> 6];
+        long[] oBits = new long[xBits.length];
+        for (int cell = 0; cell < cells; cell++) {
+            Mark mark = field.getMark(cell);
+            if (mark == X) {
+                xBits[cell >>> 6] |= 1L << cell;
+            } else if (mark == O) {
+                oBits[cell >>> 6] |= 1L << cell;
+            }
+        }
+        return new Position(field.getRows(), field.getColumns(), field.getWinLength(), xBits, oBits);
+    }
+
+    /**
+     * @return the empty board.
+     */
+    public static Position empty(int rows, int columns, int winLength) {
+        return of(new Field(rows, columns, winLength));
+    }
+
+    /**
+     * @return the position after the side to move placed its mark on the cell.
+     * @throws IllegalArgumentException if the cell is taken.
+     */
+    public Position play(int row, int column) {
+        int cell = row * columns + column;
+        if (getMark(row, column) != BLANK) {
+            throw new IllegalArgumentException("Cell " + (row + 1) + " " + (column + 1) + " is occupied.");
+        }
+        long[] x = xBits;
+        long[] o = oBits;
+        if (getSideToMove() == X) {
+            x = xBits.clone();
+            x[cell >>> 6] |= 1L << cell;
+        } else {
+            o = oBits.clone();
+            o[cell >>> 6] |= 1L << cell;
+        }
+        return new Position(rows, columns, winLength, x, o);
+    }
+
+    /**
+     * @return a new field with this position, e.g. to search on.
+     */
+    public Field toField() {
+        Field field = new Field(rows, columns, winLength);
+        for (int word = 0; word < xBits.length; word++) {
+            for (long bits = xBits[word]; bits != 0; bits &= bits - 1) {
+                field.setMark(word << 6 | Long.numberOfTrailingZeros(bits), X);
+            }
+            for (long bits = oBits[word]; bits != 0; bits &= bits - 1) {
+                field.setMark(word << 6 | Long.numberOfTrailingZeros(bits), O);
+            }
+        }
+        return field;
+    }
+
+    public Mark getMark(int row, int column) {
+        int cell = row * columns + column;
+        long bit = 1L << cell;
+        return (xBits[cell >>> 6] & bit) != 0 ? X : (oBits[cell >>> 6] & bit) != 0 ? O : BLANK;
+    }
+
+    /**
+     * @return mark that makes the next move, X moves first.
+     */
+    public Mark getSideToMove() {
+        int xCount = 0;
+        int oCount = 0;
+        for (int word = 0; word < xBits.length; word++) {
+            xCount += Long.bitCount(xBits[word]);
+            oCount += Long.bitCount(oBits[word]);
+        }
+        return xCount == oCount ? X : O;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Position)) {
+            return false;
+        }
+        Position position = (Position) other;
+        return rows == position.rows && columns == position.columns && winLength == position.winLength
+                && Arrays.equals(xBits, position.xBits) && Arrays.equals(oBits, position.oBits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(xBits) + Arrays.hashCode(oBits);
+    }
+
+    @Override
+    public String toString() {
+        return toField().toString();
+    }
+}
@@ -0,0 +1,234 @@
+package game;
+
+import java.util.Random;
+
+import static game.Mark.*;
+
+/**
+ * Qubic: 3D Tic-Tac-Toe on a 4x4x4 cube, four in a row wins. Rows, columns, pillars and all diagonals
+ * count, 76 lines in total.
+ *
+ * The 64 cells fit into one {@code long} per player, cell {@code layer * 16 + row * 4 + column}.
+ * Every line is a precomputed mask, so a win is {@code (marks & line) == line} for the 4 to 7 lines
+ * through the cell of the last move.
+ */
+public final class QubicBoard {
+
+    public static final int CELLS = 64;
+    public static final int SIZE = 4;
+
+    /**
+     * The 76 winning lines as masks.
+     */
+    static final long[] LINES;
+
+    /**
+     * Indices into {@link #LINES} of the lines through every cell.
+     */
+    static final int[][] CELL_LINES = new int[CELLS][];
+
+    private static final long[] ZOBRIST_X = new long[CELLS];
+    private static final long[] ZOBRIST_O = new long[CELLS];
+
+    static {
+        long[] lines = new long[76];
+        int count = 0;
+        // Every direction with a positive first non-zero step, so each line is found once.
+        for (int dl = -1; dl <= 1; dl++) {
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (dl < 0 || dl == 0 && (dr < 0 || dr == 0 && dc <= 0)) {
+                        continue;
+                    }
+                    for (int cell = 0; cell < CELLS; cell++) {
+                        long line = line(cell / 16, cell / 4 % 4, cell % 4, dl, dr, dc);
+                        if (line != 0) {
+                            lines[count++] = line;
+                        }
+                    }
+                }
+            }
+        }
+        LINES = lines;
+        int[] through = new int[CELLS];
+        for (long line : LINES) {
+            for (long bits = line; bits != 0; bits &= bits - 1) {
+                through[Long.numberOfTrailingZeros(bits)]++;
+            }
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            CELL_LINES[cell] = new int[through[cell]];
+            through[cell] = 0;
+        }
+        for (int i = 0; i < LINES.length; i++) {
+            for (long bits = LINES[i]; bits != 0; bits &= bits - 1) {
+                int cell = Long.numberOfTrailingZeros(bits);
+                CELL_LINES[cell][through[cell]++] = i;
+            }
+        }
+        Random random = new Random(0x5EEDL * CELLS + SIZE);
+        for (int cell = 0; cell < CELLS; cell++) {
+            ZOBRIST_X[cell] = random.nextLong();
+            ZOBRIST_O[cell] = random.nextLong();
+        }
+    }
+
+    private long xBits;
+    private long oBits;
+    private int marks;
+    private long hash;
+    private Mark winner = BLANK;
+    private long winningLine;
+
+    /**
+     * Creates the empty cube, X moves first.
+     */
+    public QubicBoard() {
+    }
+
+    private QubicBoard(QubicBoard other) {
+        xBits = other.xBits;
+        oBits = other.oBits;
+        marks = other.marks;
+        hash = other.hash;
+        winner = other.winner;
+        winningLine = other.winningLine;
+    }
+
+    /**
+     * @return the line of 4 cells starting at the cell in the direction, 0 if it leaves the cube.
+     */
+    private static long line(int layer, int row, int column, int dl, int dr, int dc) {
+        long line = 0;
+        for (int i = 0; i < SIZE; i++) {
+            int l = layer + i * dl;
+            int r = row + i * dr;
+            int c = column + i * dc;
+            if (l < 0 || l >= SIZE || r < 0 || r >= SIZE || c < 0 || c >= SIZE) {
+                return 0;
+            }
+            line |= 1L << (l * 16 + r * 4 + c);
+        }
+        return line;
+    }
+
+    /**
+     * @return an independent copy, e.g. for a search on another thread.
+     */
+    public QubicBoard copy() {
+        return new QubicBoard(this);
+    }
+
+    /**
+     * Places the mark of the side to move on a free cell.
+     */
+    public void play(int cell) {
+        long bit = 1L << cell;
+        if (isXsTurn()) {
+            xBits |= bit;
+            hash ^= ZOBRIST_X[cell];
+            checkWin(cell, xBits, X);
+        } else {
+            oBits |= bit;
+            hash ^= ZOBRIST_O[cell];
+            checkWin(cell, oBits, O);
+        }
+        marks++;
+    }
+
+    private void checkWin(int cell, long bits, Mark mark) {
+        for (int line : CELL_LINES[cell]) {
+            if ((bits & LINES[line]) == LINES[line]) {
+                winner = mark;
+                winningLine = LINES[line];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes back the last move, which was played on the given cell.
+     */
+    public void undo(int cell) {
+        long bit = 1L << cell;
+        if ((xBits & bit) != 0) {
+            xBits &= ~bit;
+            hash ^= ZOBRIST_X[cell];
+        } else {
+            oBits &= ~bit;
+            hash ^= ZOBRIST_O[cell];
+        }
+        // No move is played after a win, so only the last move can have won.
+        winner = BLANK;
+        winningLine = 0;
+        marks--;
+    }
+
+    public boolean isGameOver() {
+        return winner != BLANK || marks == CELLS;
+    }
+
+    /**
+     * @return the winner, {@link Mark#BLANK} for a draw or a game that isn't over.
+     */
+    public Mark getWinner() {
+        return winner;
+    }
+
+    /**
+     * @return mask of the 4 cells of the winning line, 0 if nobody has won.
+     */
+    public long getWinningLine() {
+        return winningLine;
+    }
+
+    public boolean isXsTurn() {
+        return (marks & 1) == 0;
+    }
+
+    public Mark getMark(int cell) {
+        long bit = 1L << cell;
+        return (xBits & bit) != 0 ? X : (oBits & bit) != 0 ? O : BLANK;
+    }
+
+    /**
+     * @return mask of the free cells.
+     */
+    public long getFreeCells() {
+        return ~(xBits | oBits);
+    }
+
+    /**
+     * @return mask of the cells of the mark.
+     */
+    public long getBits(Mark mark) {
+        return mark == X ? xBits : mark == O ? oBits : getFreeCells();
+    }
+
+    public int numOfMarks() {
+        return marks;
+    }
+
+    /**
+     * @return key of the position for the {@link TranspositionTable}.
+     */
+    public long key() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        String newLine = System.lineSeparator();
+        for (int row = 0; row < SIZE; row++) {
+            for (int layer = 0; layer < SIZE; layer++) {
+                for (int column = 0; column < SIZE; column++) {
+                    Mark mark = getMark(layer * 16 + row * 4 + column);
+                    builder.append(mark == BLANK ? '.' : mark.toString().charAt(0));
+                }
+                builder.append(layer < SIZE - 1 ? "   " : newLine);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,209 @@
+package game;
+
+import java.util.Random;
+
+import static game.Mark.*;
+
+/**
+ * Search for {@link QubicBoard}, see {@link VariantSearch}. Positions at the depth limit are scored by
+ * the open lines of both players.
+ *
+ * Threats (lines with three marks of one player and a free cell) are resolved before the depth counts:
+ * the side to move wins with a threat of its own, loses against two threats of the opponent and has to
+ * block a single one. A forced block doesn't use up depth, so sequences of threats are searched to
+ * their end and the width of the tree drops from up to 64 moves to one. Moves with the same history
+ * score are ordered by the number of lines through the cell.
+ */
+public final class QubicSearch extends VariantSearch {
+
+    /**
+     * Value of an open line with 0 to 3 marks of one player.
+     */
+    private static final int[] LINE_VALUES = {0, 1, 6, 30};
+
+    /**
+     * Value of a free cell in two open lines with two marks of one player: a move there makes two threats.
+     */
+    private static final int FORK = 40;
+
+    private static final TranspositionTable sharedTable = new TranspositionTable(1 << 18);
+
+    private final QubicBoard board;
+
+    /**
+     * Results of {@link #scanLines()} for the current node: the line score for the side to move and the
+     * cells that complete a line of the side to move and of the opponent.
+     */
+    private int lineScore;
+    private long ownThreats;
+    private long opponentThreats;
+
+    /**
+     * Searches with the table that is shared by all searches of the GUI.
+     * @param position position to search, not modified.
+     * @param millis time budget, at least the first depth is always searched.
+     */
+    public QubicSearch(QubicBoard position, long millis) {
+        this(position, millis, sharedTable);
+    }
+
+    /**
+     * @param position position to search, not modified.
+     * @param millis time budget, at least the first depth is always searched.
+     * @param table transposition table, e.g. an empty one for repeatable measurements.
+     */
+    public QubicSearch(QubicBoard position, long millis, TranspositionTable table) {
+        super(QubicBoard.CELLS, table, millis);
+        this.board = position.copy();
+    }
+
+    /**
+     * Computes a move for the side to move like {@link UltimateSearch#move(UltimateBoard, int, long, Random)}.
+     * @param position the position, not changed.
+     * @param difficulty 1 (Easy) to 5 (Casual).
+     * @param millis time budget of the search.
+     * @param random random generator of the calling thread.
+     * @return cell of the move, -1 if the game is over.
+     */
+    public static int move(QubicBoard position, int difficulty, long millis, Random random) {
+        if (position.isGameOver()) {
+            return -1;
+        }
+        if (difficulty == 1 || difficulty == 5 && random.nextInt(4) == 0) {
+            long free = position.getFreeCells();
+            for (int skip = random.nextInt(Long.bitCount(free)); skip > 0; skip--) {
+                free &= free - 1;
+            }
+            return Long.numberOfTrailingZeros(free);
+        }
+        QubicSearch search = new QubicSearch(position, millis);
+        return search.run(difficulty == 2 ? 2 : QubicBoard.CELLS);
+    }
+
+    @Override
+    int legalMoves(int[] moves) {
+        if (board.isGameOver()) {
+            return 0;
+        }
+        int count = 0;
+        for (long free = board.getFreeCells(); free != 0; free &= free - 1) {
+            moves[count++] = Long.numberOfTrailingZeros(free);
+        }
+        return count;
+    }
+
+    @Override
+    void play(int cell) {
+        board.play(cell);
+    }
+
+    @Override
+    void undo(int cell) {
+        board.undo(cell);
+    }
+
+    @Override
+    boolean isGameOver() {
+        return board.isGameOver();
+    }
+
+    @Override
+    boolean isWon() {
+        return board.getWinner() != BLANK;
+    }
+
+    @Override
+    boolean isXsTurn() {
+        return board.isXsTurn();
+    }
+
+    @Override
+    int numOfMarks() {
+        return board.numOfMarks();
+    }
+
+    @Override
+    long key() {
+        return board.key();
+    }
+
+    @Override
+    int cellPrior(int cell) {
+        return QubicBoard.CELL_LINES[cell].length;
+    }
+
+    @Override
+    int resolveThreats(int remaining, int ply, int alpha, int beta) {
+        scanLines();
+        if (ownThreats != 0) {
+            return WIN - ply - 1;
+        }
+        if (Long.bitCount(opponentThreats) > 1) {
+            // Only one of them can be blocked.
+            return ply + 2 - WIN;
+        }
+        if (opponentThreats != 0) {
+            int cell = Long.numberOfTrailingZeros(opponentThreats);
+            board.play(cell);
+            int result = -search(remaining, ply + 1, -beta, -alpha);
+            board.undo(cell);
+            return result;
+        }
+        return NO_SCORE;
+    }
+
+    /**
+     * Only called right after {@link #resolveThreats(int, int, int, int)} found nothing to resolve, which
+     * scanned the lines of this position already.
+     */
+    @Override
+    int evaluate() {
+        return lineScore;
+    }
+
+    /**
+     * Sets {@link #lineScore}, the heuristic score for the side to move: every line that only one player
+     * can still win counts for that player by its number of marks, and every cell where a player could
+     * make two threats at once. Also collects the threats of both players.
+     */
+    private void scanLines() {
+        boolean xToMove = board.isXsTurn();
+        long own = board.getBits(xToMove ? X : O);
+        long opponent = board.getBits(xToMove ? O : X);
+        long free = board.getFreeCells();
+        long ownCells = 0;
+        long opponentCells = 0;
+        // Free cells of the open lines with two marks, and those in at least two such lines.
+        long ownTwos = 0;
+        long ownForks = 0;
+        long opponentTwos = 0;
+        long opponentForks = 0;
+        int value = 0;
+        for (long line : QubicBoard.LINES) {
+            long mine = own & line;
+            long theirs = opponent & line;
+            if (theirs == 0) {
+                int marks = Long.bitCount(mine);
+                value += LINE_VALUES[marks];
+                if (marks == 3) {
+                    ownCells |= line & free;
+                } else if (marks == 2) {
+                    ownForks |= ownTwos & line & free;
+                    ownTwos |= line & free;
+                }
+            } else if (mine == 0) {
+                int marks = Long.bitCount(theirs);
+                value -= LINE_VALUES[marks];
+                if (marks == 3) {
+                    opponentCells |= line & free;
+                } else if (marks == 2) {
+                    opponentForks |= opponentTwos & line & free;
+                    opponentTwos |= line & free;
+                }
+            }
+        }
+        ownThreats = ownCells;
+        opponentThreats = opponentCells;
+        lineScore = value + FORK * (Long.bitCount(ownForks) - Long.bitCount(opponentForks));
+    }
+}
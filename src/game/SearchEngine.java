@@ -0,0 +1,54 @@
+package game;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@link Engine} that plays like {@link AI#getMoveByDifficulty(Field, Mark, int)}.
+ * Every move is searched on a new {@link Field} made from the position, random choices use the
+ * {@link ThreadLocalRandom} of the calling thread. The only state shared between concurrent moves is
+ * the lock-free {@link TranspositionTable}, whose entries are checked against their key.
+ */
+public final class SearchEngine implements Engine {
+
+    private static final int TABLE_SIZE = 1 << 16;
+
+    private final int difficulty;
+    private final TranspositionTable table;
+
+    /**
+     * @param difficulty 1 (Easy), 2 (Medium), 3 (Hard), 4 (Monte Carlo) or 5 (Casual).
+     */
+    public SearchEngine(int difficulty) {
+        this(difficulty, new TranspositionTable(TABLE_SIZE));
+    }
+
+    /**
+     * @param difficulty 1 (Easy), 2 (Medium), 3 (Hard), 4 (Monte Carlo) or 5 (Casual).
+     * @param table transposition table, may be shared with other engines.
+     */
+    public SearchEngine(int difficulty, TranspositionTable table) {
+        if (difficulty < 1 || difficulty > 5) {
+            throw new IllegalArgumentException("Unsupported AI difficulty: " + difficulty);
+        }
+        this.difficulty = difficulty;
+        this.table = table;
+    }
+
+    @Override
+    public int[] move(Position position) {
+        Field field = position.toField();
+        if (field.isGameOver()) {
+            return new int[] {-1, -1};
+        }
+        Mark mark = field.isXsTurn() ? Mark.X : Mark.O;
+        return AI.move(field, mark, difficulty, table, ThreadLocalRandom.current());
+    }
+
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+}
@@ -0,0 +1,287 @@
+package game;
+
+import log.GameLog;
+import log.Level;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counters of the AI search: nodes visited by {@link AI#miniMax(Field, int, int, int, int, boolean, Mark, TranspositionTable)}
+ * and {@link DeepeningSearch}, alpha-beta cutoffs, transposition table probes and hits (entries deep
+ * enough to be used), the deepest ply reached and the wall time per move.
+ *
+ * Disabled by default (enable with {@link #setCounting(boolean)} or {@code -Dtictactoe.stats=true}).
+ * When disabled the search only reads one flag per node. The counters are {@link LongAdder}s, so
+ * the threads of the parallel search don't contend on them.
+ *
+ * The totals count every move. The "last move" values are the difference of the totals before and
+ * after a move, so they are exact as long as only one game is searching (e.g. the GUI). In the
+ * server they include the nodes of the other games searching at the same time.
+ * The Monte Carlo difficulty and moves taken from a table only count the time.
+ */
+public final class SearchStats implements SearchStatsMBean {
+
+    public static final String OBJECT_NAME = "tictactoe:type=SearchStats";
+
+    static volatile boolean enabled = Boolean.getBoolean("tictactoe.stats");
+
+    private static final LongAdder nodes = new LongAdder();
+    private static final LongAdder cutoffs = new LongAdder();
+    private static final LongAdder tableProbes = new LongAdder();
+    private static final LongAdder tableHits = new LongAdder();
+    private static final LongAdder moves = new LongAdder();
+    private static final LongAdder moveNanos = new LongAdder();
+    private static final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+    private static volatile Move lastMove = new Move(0, 0, 0, 0, 0, 0, 0);
+    private static boolean registered = false;
+
+    private SearchStats() {
+    }
+
+    /**
+     * Values of a single move.
+     */
+    public static final class Move {
+
+        private final int difficulty;
+        private final long nodes;
+        private final long cutoffs;
+        private final long tableProbes;
+        private final long tableHits;
+        private final int maxDepth;
+        private final long nanos;
+
+        Move(int difficulty, long nodes, long cutoffs, long tableProbes, long tableHits, int maxDepth, long nanos) {
+            this.difficulty = difficulty;
+            this.nodes = nodes;
+            this.cutoffs = cutoffs;
+            this.tableProbes = tableProbes;
+            this.tableHits = tableHits;
+            this.maxDepth = maxDepth;
+            this.nanos = nanos;
+        }
+
+        public int getDifficulty() {
+            return difficulty;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getCutoffs() {
+            return cutoffs;
+        }
+
+        public long getTableProbes() {
+            return tableProbes;
+        }
+
+        public long getTableHits() {
+            return tableHits;
+        }
+
+        /**
+         * @return share of the table probes that found a usable entry, between 0 and 1.
+         */
+        public double getTableHitRate() {
+            return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+        }
+
+        /**
+         * @return deepest ply below the root that was searched.
+         */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getNodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("nodes %,d  cutoffs %,d  TT hits %,d  depth %d  %.1f ms  %,.0f nodes/s",
+                    nodes, cutoffs, tableHits, maxDepth, nanos / 1e6, getNodesPerSecond());
+        }
+    }
+
+    public static boolean isCounting() {
+        return enabled;
+    }
+
+    /**
+     * @param on true to count, false to stop counting. The counters keep their values.
+     */
+    public static void setCounting(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * @return values of the last move computed while the counters were enabled.
+     */
+    public static Move getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Registers the counters with the platform MBean server as {@value #OBJECT_NAME}.
+     * Does nothing if they are registered already.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new SearchStats(), new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (JMException e) {
+            GameLog.log(Level.WARN, "Could not register " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+    // Called by the search, only while enabled.
+
+    static void node(int depth) {
+        nodes.increment();
+        maxDepth.accumulate(depth);
+    }
+
+    static void cutoff() {
+        cutoffs.increment();
+    }
+
+    static void tableProbe() {
+        tableProbes.increment();
+    }
+
+    static void tableHit() {
+        tableHits.increment();
+    }
+
+    /**
+     * Runs a move of the AI and records its values.
+     */
+    static int[] measure(int difficulty, Supplier<int[]> search) {
+        long nodesBefore = nodes.sum();
+        long cutoffsBefore = cutoffs.sum();
+        long probesBefore = tableProbes.sum();
+        long hitsBefore = tableHits.sum();
+        maxDepth.reset();
+        long start = System.nanoTime();
+        int[] move = search.get();
+        long nanos = System.nanoTime() - start;
+        moves.increment();
+        moveNanos.add(nanos);
+        lastMove = new Move(difficulty, nodes.sum() - nodesBefore, cutoffs.sum() - cutoffsBefore,
+                tableProbes.sum() - probesBefore, tableHits.sum() - hitsBefore, (int) maxDepth.get(), nanos);
+        return move;
+    }
+
+    // MBean attributes, the instance only exists to be registered.
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    @Override
+    public void reset() {
+        nodes.reset();
+        cutoffs.reset();
+        tableProbes.reset();
+        tableHits.reset();
+        moves.reset();
+        moveNanos.reset();
+        maxDepth.reset();
+        lastMove = new Move(0, 0, 0, 0, 0, 0, 0);
+    }
+
+    @Override
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getCutoffs() {
+        return cutoffs.sum();
+    }
+
+    @Override
+    public long getTableProbes() {
+        return tableProbes.sum();
+    }
+
+    @Override
+    public long getTableHits() {
+        return tableHits.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return moveNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        long nanos = moveNanos.sum();
+        return nanos == 0 ? 0 : nodes.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public int getLastMoveDifficulty() {
+        return lastMove.getDifficulty();
+    }
+
+    @Override
+    public long getLastMoveNodes() {
+        return lastMove.getNodes();
+    }
+
+    @Override
+    public long getLastMoveCutoffs() {
+        return lastMove.getCutoffs();
+    }
+
+    @Override
+    public long getLastMoveTableProbes() {
+        return lastMove.getTableProbes();
+    }
+
+    @Override
+    public long getLastMoveTableHits() {
+        return lastMove.getTableHits();
+    }
+
+    @Override
+    public int getLastMoveMaxDepth() {
+        return lastMove.getMaxDepth();
+    }
+
+    @Override
+    public double getLastMoveMillis() {
+        return lastMove.getNanos() / 1e6;
+    }
+}
@@ -0,0 +1,45 @@
+package game;
+
+/**
+ * Management interface of {@link SearchStats}, registered as {@value SearchStats#OBJECT_NAME}.
+ * Open it with jconsole or VisualVM while the game or the server is running.
+ */
+public interface SearchStatsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Sets all counters to 0.
+     */
+    void reset();
+
+    long getMoves();
+
+    long getNodes();
+
+    long getCutoffs();
+
+    long getTableProbes();
+
+    long getTableHits();
+
+    double getTotalMillis();
+
+    double getNodesPerSecond();
+
+    int getLastMoveDifficulty();
+
+    long getLastMoveNodes();
+
+    long getLastMoveCutoffs();
+
+    long getLastMoveTableProbes();
+
+    long getLastMoveTableHits();
+
+    int getLastMoveMaxDepth();
+
+    double getLastMoveMillis();
+}
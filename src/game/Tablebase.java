@@ -0,0 +1,234 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static game.Mark.*;
+
+/**
+ * Win/draw/loss result of every position of a small board, generated offline by
+ * {@link TablebaseGenerator} and memory-mapped at runtime, so the file is never read as a whole.
+ *
+ * Positions are indexed like in the {@link PerfectPlayTable}: base-3 encoding of the board with
+ * X = 1 and O = 2, so a board of n cells has 3^n entries. Every entry is 2 bits, 32 per long:
+ * {@link #UNKNOWN} for positions that are over or not solved, otherwise the result for the side to move.
+ *
+ * File layout:
+ * <pre>
+ * int   magic
+ * byte  rows, columns, winLength, reserved
+ * int   lowest solved layer (number of marks), 0 once the table is complete
+ * long  number of entries (3^cells)
+ * 16 bytes reserved
+ * long[] entries, 32 per long, entry i in bits 2 * (i % 32) and above
+ * </pre>
+ */
+public final class Tablebase {
+
+    static final int MAGIC = 0x54544231; // "TTB1"
+    static final int HEADER_BYTES = 32;
+
+    /**
+     * Largest board that can be generated, 3^18 entries take 97 MB.
+     */
+    static final int MAX_CELLS = 18;
+
+    static final int UNKNOWN = 0;
+    static final int DRAW = 1;
+    static final int WIN = 2;
+    static final int LOSS = 3;
+
+    /**
+     * Base-3 value of every 9-bit mask. Larger masks are split into two halves.
+     */
+    private static final int[] BASE3 = new int[1 << 9];
+    private static final int BASE3_HIGH = 19683; // 3^9
+
+    static {
+        for (int mask = 0; mask < BASE3.length; mask++) {
+            int value = 0;
+            for (int cell = 8; cell >= 0; cell--) {
+                value = value * 3 + ((mask >> cell) & 1);
+            }
+            BASE3[mask] = value;
+        }
+    }
+
+    private final int rows;
+    private final int columns;
+    private final int winLength;
+    private final int[][] cellLines;
+    private final LongBuffer entries;
+
+    private Tablebase(int rows, int columns, int winLength, LongBuffer entries) {
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.cellLines = linesThroughCells(rows, columns, winLength);
+        this.entries = entries;
+    }
+
+    /**
+     * Maps a complete tablebase file.
+     * @throws IOException if the file can't be read, isn't a tablebase or is not complete.
+     */
+    public static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the whole header.
+            }
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a tablebase.");
+            }
+            int rows = header.get(4);
+            int columns = header.get(5);
+            int winLength = header.get(6);
+            if (header.getInt(8) != 0) {
+                throw new IOException(file + " is incomplete, run the generator again to finish it.");
+            }
+            long size = channel.size() - HEADER_BYTES;
+            if (size != words(rows * columns) * Long.BYTES) {
+                throw new IOException(file + " has the wrong size.");
+            }
+            // The mapping stays valid after the channel is closed.
+            LongBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size).asLongBuffer();
+            return new Tablebase(rows, columns, winLength, entries);
+        }
+    }
+
+    /**
+     * @return true if the table was generated for the board of the field.
+     */
+    public boolean matches(Field field) {
+        return field.getRows() == rows && field.getColumns() == columns && field.getWinLength() == winLength;
+    }
+
+    /**
+     * Picks a random move among the best ones of the side to move: a move that wins on the spot,
+     * otherwise one that keeps a won position won, otherwise one that keeps the draw.
+     * @param field a field that {@link #matches(Field) matches} the table.
+     * @return cell index of the move, -1 if the game is over or lost anyway. A lost position is better
+     * left to a search, which delays the loss as long as possible.
+     */
+    public int pickMove(Field field, Random random) {
+        if (field.isGameOver()) {
+            return -1;
+        }
+        boolean xToMove = field.isXsTurn();
+        int mover = (int) field.getBits(xToMove ? X : O);
+        int other = (int) field.getBits(xToMove ? O : X);
+        int free = (int) field.getFreeCells();
+
+        // Cells of the best moves found so far and how good they are: 3 wins now, 2 wins, 1 draws.
+        int bestMoves = 0;
+        int bestRank = 0;
+        for (int cells = free; cells != 0; cells &= cells - 1) {
+            int cell = Integer.numberOfTrailingZeros(cells);
+            int moved = mover | 1 << cell;
+            int rank;
+            if (completesLine(moved, cellLines[cell])) {
+                rank = 3;
+            } else {
+                int result = xToMove ? value(moved, other) : value(other, moved);
+                rank = result == LOSS ? 2 : result == DRAW ? 1 : 0;
+            }
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestMoves = 0;
+            }
+            if (rank == bestRank) {
+                bestMoves |= 1 << cell;
+            }
+        }
+        if (bestRank == 0) {
+            return -1;
+        }
+        int pick = random.nextInt(Integer.bitCount(bestMoves));
+        for (int i = 0; i < pick; i++) {
+            bestMoves &= bestMoves - 1;
+        }
+        return Integer.numberOfTrailingZeros(bestMoves);
+    }
+
+    /**
+     * @return {@link #WIN}, {@link #DRAW} or {@link #LOSS} for the side to move, {@link #UNKNOWN} if
+     * the game is over.
+     */
+    int value(int xBits, int oBits) {
+        int index = index(xBits, oBits);
+        return (int) (entries.get(index >>> 5) >>> ((index & 31) << 1)) & 3;
+    }
+
+    static int index(int xBits, int oBits) {
+        return base3(xBits) + 2 * base3(oBits);
+    }
+
+    private static int base3(int mask) {
+        return BASE3[mask & 511] + BASE3_HIGH * BASE3[mask >>> 9];
+    }
+
+    /**
+     * @return number of longs needed for the entries of a board with the given number of cells.
+     */
+    static long words(int cells) {
+        return (entries(cells) + 31) / 32;
+    }
+
+    /**
+     * @return number of entries of a board with the number of cells, 3^cells.
+     */
+    static long entries(int cells) {
+        long entries = 1;
+        for (int i = 0; i < cells; i++) {
+            entries *= 3;
+        }
+        return entries;
+    }
+
+    /**
+     * @return for every cell the bitmasks of all lines of {@code winLength} cells through it.
+     */
+    static int[][] linesThroughCells(int rows, int columns, int winLength) {
+        int[][] directions = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };
+        int[] counts = new int[rows * columns];
+        int[][] lines = new int[rows * columns][4 * winLength];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                for (int[] direction : directions) {
+                    int endRow = row + (winLength - 1) * direction[0];
+                    int endColumn = column + (winLength - 1) * direction[1];
+                    if (endRow >= rows || endColumn < 0 || endColumn >= columns) {
+                        continue;
+                    }
+                    int line = 0;
+                    for (int i = 0; i < winLength; i++) {
+                        line |= 1 << ((row + i * direction[0]) * columns + column + i * direction[1]);
+                    }
+                    for (int cells = line; cells != 0; cells &= cells - 1) {
+                        int cell = Integer.numberOfTrailingZeros(cells);
+                        lines[cell][counts[cell]++] = line;
+                    }
+                }
+            }
+        }
+        for (int cell = 0; cell < lines.length; cell++) {
+            lines[cell] = Arrays.copyOf(lines[cell], counts[cell]);
+        }
+        return lines;
+    }
+
+    static boolean completesLine(int bits, int[] lines) {
+        for (int line : lines) {
+            if ((bits & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,349 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Builds a {@link Tablebase} by retrograde analysis.
+ * Every move adds a mark, so the positions form layers by their number of marks. The full board is
+ * solved first, then every layer is solved from the results of the layer above it, back to the
+ * empty board. No position is searched twice and nothing but the table itself is kept in memory
+ * (2 bits per position, 10.7 MB for 4x4).
+ *
+ * The positions of a layer are divided between the threads of the common {@link ForkJoinPool}.
+ * After every layer the table is written to the file, so an interrupted run continues with the
+ * next unsolved layer when it is started again. A file that holds anything else, e.g. the table of
+ * another board, is only replaced with {@code overwrite}.
+ *
+ * Usage: {@code TablebaseGenerator <rows> <columns> <winLength> <file> [overwrite]}
+ */
+public final class TablebaseGenerator {
+
+    /**
+     * Number of X masks a task solves without splitting further.
+     */
+    private static final int TASK_MASKS = 64;
+
+    private final int rows;
+    private final int columns;
+    private final int winLength;
+    private final int cells;
+    private final int[] lines;
+    private final int[][] cellLines;
+    private final AtomicLongArray table;
+
+    private TablebaseGenerator(int rows, int columns, int winLength) {
+        Geometry.of(rows, columns, winLength);
+        this.cells = rows * columns;
+        if (cells > Tablebase.MAX_CELLS) {
+            throw new IllegalArgumentException("Boards of more than " + Tablebase.MAX_CELLS + " cells are not supported.");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.cellLines = Tablebase.linesThroughCells(rows, columns, winLength);
+        this.lines = Arrays.stream(cellLines).flatMapToInt(java.util.Arrays::stream).distinct().toArray();
+        this.table = new AtomicLongArray((int) Tablebase.words(cells));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4 && (args.length != 5 || !args[4].equals("overwrite"))) {
+            System.out.println("Usage: TablebaseGenerator <rows> <columns> <winLength> <file> [overwrite]");
+            return;
+        }
+        generate(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]), Paths.get(args[3]),
+                args.length == 5);
+    }
+
+    /**
+     * Generates the tablebase or finishes an interrupted generation.
+     * @param file the table, continued if it holds a partial table for the same board.
+     * @throws IOException also if the file holds anything else, see {@link #generate(int, int, int, Path, boolean)}.
+     */
+    public static void generate(int rows, int columns, int winLength, Path file) throws IOException {
+        generate(rows, columns, winLength, file, false);
+    }
+
+    /**
+     * Generates the tablebase or finishes an interrupted generation.
+     * @param file the table, continued if it holds a partial table for the same board.
+     * @param overwrite true to replace a file that holds anything else, e.g. the table of another board.
+     * Otherwise such a file is refused, it may be hours of work.
+     */
+    public static void generate(int rows, int columns, int winLength, Path file, boolean overwrite)
+            throws IOException {
+        TablebaseGenerator generator = new TablebaseGenerator(rows, columns, winLength);
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+            int layer = generator.resume(channel, file, overwrite);
+            if (layer == generator.cells + 1) {
+                System.out.println("Generating " + rows + "x" + columns + ", " + winLength + " in a row.");
+            } else if (layer > 0) {
+                System.out.println("Continuing with layer " + (layer - 1) + ".");
+            } else {
+                System.out.println(file + " is complete.");
+            }
+            long start = System.nanoTime();
+            while (layer > 0) {
+                layer--;
+                long layerStart = System.nanoTime();
+                long positions = generator.solveLayer(layer);
+                generator.checkpoint(channel, layer);
+                System.out.printf("Layer %2d: %,11d positions in %,6d ms%n", layer, positions,
+                        (System.nanoTime() - layerStart) / 1_000_000);
+            }
+            System.out.printf("Done in %,d ms, empty board: %s%n", (System.nanoTime() - start) / 1_000_000,
+                    new String[] {"unknown", "draw", "first player wins", "second player wins"}[generator.value(0, 0)]);
+        }
+    }
+
+    /**
+     * Loads a partial table from the file.
+     * @param overwrite true to empty a file that doesn't hold a table for this board.
+     * @return lowest layer that is solved already, {@code cells + 1} if none is, e.g. for an empty file or one
+     * whose first checkpoint was interrupted before the header was written.
+     * @throws IOException if the file isn't empty and doesn't hold a table for this board, unless overwritten.
+     */
+    private int resume(FileChannel channel, Path file, boolean overwrite) throws IOException {
+        if (channel.size() == 0) {
+            return cells + 1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES);
+        long position = 0;
+        while (header.hasRemaining()) {
+            int read = channel.read(header, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        if (!header.hasRemaining() && isBlank(header)
+                && channel.size() <= Tablebase.HEADER_BYTES + table.length() * 8L) {
+            // Killed during the first checkpoint: the header is written last, this is our own partial output.
+            return cells + 1;
+        }
+        if (header.hasRemaining() || header.getInt(0) != Tablebase.MAGIC || header.get(4) != rows
+                || header.get(5) != columns || header.get(6) != winLength
+                || channel.size() != Tablebase.HEADER_BYTES + table.length() * 8L) {
+            if (!overwrite) {
+                throw new IOException(file + " is not a tablebase for " + rows + "x" + columns + ", " + winLength
+                        + " in a row. Pass overwrite to replace it.");
+            }
+            // A larger file would keep its tail behind the new table.
+            channel.truncate(0);
+            return cells + 1;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(1 << 20);
+        for (int word = 0; word < table.length(); ) {
+            chunk.clear().limit(Math.min(chunk.capacity(), (table.length() - word) * 8));
+            while (chunk.hasRemaining()) {
+                position += channel.read(chunk, position);
+            }
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                table.set(word++, chunk.getLong());
+            }
+        }
+        return header.getInt(8);
+    }
+
+    /**
+     * @return true if all bytes of the header are 0.
+     */
+    private static boolean isBlank(ByteBuffer header) {
+        for (int i = 0; i < header.capacity(); i++) {
+            if (header.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the table and marks the layer as solved. The header is written last, so a crash while
+     * writing leaves the previous checkpoint intact: the entries of the solved layers don't change.
+     */
+    private void checkpoint(FileChannel channel, int solvedLayer) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(1 << 20);
+        long position = Tablebase.HEADER_BYTES;
+        for (int word = 0; word < table.length(); ) {
+            chunk.clear();
+            while (chunk.hasRemaining() && word < table.length()) {
+                chunk.putLong(table.get(word++));
+            }
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                position += channel.write(chunk, position);
+            }
+        }
+        channel.force(false);
+
+        ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES);
+        header.putInt(Tablebase.MAGIC).put((byte) rows).put((byte) columns).put((byte) winLength).put((byte) 0)
+                .putInt(solvedLayer).putLong(Tablebase.entries(cells)).clear();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Solves all positions with the given number of marks, the layer above has to be solved already.
+     * @return number of solved positions.
+     */
+    private long solveLayer(int layer) {
+        int xCount = (layer + 1) / 2;
+        int oCount = layer / 2;
+        // Positions in which X has a line already are over and need no entry.
+        int[] xMasks = combinations(xCount, (1 << cells) - 1).filter(mask -> !hasLine(mask)).toArray();
+        AtomicLong positions = new AtomicLong();
+        ForkJoinPool.commonPool().invoke(new LayerTask(xMasks, 0, xMasks.length, oCount, positions));
+        return positions.get();
+    }
+
+    private final class LayerTask extends RecursiveAction {
+
+        private final int[] xMasks;
+        private final int from;
+        private final int to;
+        private final int oCount;
+        private final AtomicLong positions;
+
+        LayerTask(int[] xMasks, int from, int to, int oCount, AtomicLong positions) {
+            this.xMasks = xMasks;
+            this.from = from;
+            this.to = to;
+            this.oCount = oCount;
+            this.positions = positions;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_MASKS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LayerTask(xMasks, from, middle, oCount, positions),
+                        new LayerTask(xMasks, middle, to, oCount, positions));
+                return;
+            }
+            long solved = 0;
+            int full = (1 << cells) - 1;
+            for (int i = from; i < to; i++) {
+                int xBits = xMasks[i];
+                int free = full & ~xBits;
+                int freeCount = Integer.bitCount(free);
+                for (int subset = (1 << oCount) - 1; subset < 1 << freeCount; subset = nextCombination(subset)) {
+                    int oBits = deposit(subset, free);
+                    if (!hasLine(oBits)) {
+                        store(Tablebase.index(xBits, oBits), solve(xBits, oBits));
+                        solved++;
+                    }
+                    if (subset == 0) {
+                        break;
+                    }
+                }
+            }
+            positions.addAndGet(solved);
+        }
+    }
+
+    /**
+     * @return result for the side to move, the positions after every move have to be solved already.
+     */
+    private int solve(int xBits, int oBits) {
+        boolean xToMove = Integer.bitCount(xBits) == Integer.bitCount(oBits);
+        int mover = xToMove ? xBits : oBits;
+        int free = ((1 << cells) - 1) & ~(xBits | oBits);
+        if (free == 0) {
+            return Tablebase.DRAW;
+        }
+        int result = Tablebase.LOSS;
+        for (; free != 0; free &= free - 1) {
+            int cell = Integer.numberOfTrailingZeros(free);
+            int moved = mover | 1 << cell;
+            if (Tablebase.completesLine(moved, cellLines[cell])) {
+                return Tablebase.WIN;
+            }
+            int child = xToMove ? value(moved, oBits) : value(xBits, moved);
+            if (child == Tablebase.LOSS) {
+                return Tablebase.WIN;
+            }
+            if (child == Tablebase.DRAW) {
+                result = Tablebase.DRAW;
+            }
+        }
+        return result;
+    }
+
+    private int value(int xBits, int oBits) {
+        int index = Tablebase.index(xBits, oBits);
+        return (int) (table.get(index >>> 5) >>> ((index & 31) << 1)) & 3;
+    }
+
+    /**
+     * Sets an entry. Other threads set other entries of the same word at the same time.
+     */
+    private void store(int index, int result) {
+        int word = index >>> 5;
+        long bits = (long) result << ((index & 31) << 1);
+        long old;
+        do {
+            old = table.get(word);
+        } while (!table.compareAndSet(word, old, old | bits));
+    }
+
+    private boolean hasLine(int bits) {
+        for (int line : lines) {
+            if ((bits & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return all masks with {@code count} of the bits of {@code mask} set.
+     */
+    private static IntStream combinations(int count, int mask) {
+        IntStream.Builder masks = IntStream.builder();
+        int bits = Integer.bitCount(mask);
+        for (int subset = (1 << count) - 1; subset < 1 << bits; subset = nextCombination(subset)) {
+            masks.add(deposit(subset, mask));
+            if (subset == 0) {
+                break;
+            }
+        }
+        return masks.build();
+    }
+
+    /**
+     * @return next larger number with the same number of set bits (Gosper's hack).
+     */
+    private static int nextCombination(int bits) {
+        int lowest = bits & -bits;
+        int ripple = bits + lowest;
+        return ripple | ((bits ^ ripple) >>> 2) / lowest;
+    }
+
+    /**
+     * Spreads the low bits of {@code bits} over the set bits of {@code mask}, lowest first.
+     */
+    private static int deposit(int bits, int mask) {
+        int result = 0;
+        for (; bits != 0 && mask != 0; mask &= mask - 1, bits >>>= 1) {
+            if ((bits & 1) != 0) {
+                result |= mask & -mask;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table for the alpha-beta search.
+ * Positions are keyed by {@link Field#getCanonicalKey()}, so all 8 rotations and reflections of a
+ * position share one entry.
+ *
+ * Memory is bounded by the capacity given to the constructor. Entries are grouped in buckets of two:
+ * the first slot keeps the entry with the largest draft (remaining search depth), the second slot is
+ * always replaced. Each entry is stored as the pair (key ^ data, data), so an entry torn by a
+ * concurrent write fails the key check and is treated as a miss. So one table can be shared by
+ * any number of searching threads without locks. It keeps no counters, probes and hits are counted
+ * by {@link SearchStats} while it is enabled.
+ */
+public class TranspositionTable {
+
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    /**
+     * Returned by {@link #probe(long)} if the position is not stored.
+     */
+    public static final long MISS = 0;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+
+    /**
+     * @param capacity maximum number of entries, rounded up to a power of two.
+     */
+    public TranspositionTable(int capacity) {
+        int size = Math.max(2, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+        keys = new long[size];
+        data = new long[size];
+        bucketMask = (size >> 1) - 1;
+    }
+
+    /**
+     * @param key position key.
+     * @return packed entry, or {@link #MISS}. Unpack with {@link #score(long)}, {@link #flag(long)}
+     * and {@link #draft(long)}.
+     */
+    public long probe(long key) {
+        int slot = bucket(key);
+        for (int i = slot; i < slot + 2; i++) {
+            long entry = data[i];
+            if (entry != MISS && (keys[i] ^ entry) == key) {
+                return entry;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores the result of a search.
+     * @param key position key.
+     * @param score score of the position.
+     * @param flag {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}.
+     * @param draft remaining search depth below the position (0-255).
+     */
+    public void store(long key, int score, int flag, int draft) {
+        store(key, score, flag, draft, -1);
+    }
+
+    /**
+     * Stores the result of a search together with the best move found.
+     * @param move cell index of the best move (0-1022), -1 if unknown.
+     */
+    public void store(long key, int score, int flag, int draft, int move) {
+        long entry = (score & 0xFFFFFFFFL) | (long) flag << 32 | (long) Math.min(draft, 0xFF) << 34
+                | (long) (move + 1 & 0x3FF) << 42;
+        int slot = bucket(key);
+        long existing = data[slot];
+        // Depth-preferred slot: take it if empty, same position or a search at least as deep.
+        // Otherwise fall back to the always-replace slot.
+        if (existing != MISS && (keys[slot] ^ existing) != key && draft < draft(existing)) {
+            slot++;
+        }
+        data[slot] = entry;
+        keys[slot] = key ^ entry;
+    }
+
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    public static int flag(long entry) {
+        return (int) (entry >>> 32) & 0x3;
+    }
+
+    public static int draft(long entry) {
+        return (int) (entry >>> 34) & 0xFF;
+    }
+
+    /**
+     * @return cell index of the stored best move, -1 if none was stored.
+     */
+    public static int move(long entry) {
+        return ((int) (entry >>> 42) & 0x3FF) - 1;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) << 1;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+}
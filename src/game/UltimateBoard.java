@@ -0,0 +1,298 @@
+package game;
+
+import java.util.Random;
+
+import static game.Mark.*;
+
+/**
+ * Ultimate Tic-Tac-Toe: nine classic boards in a 3x3 grid. A board is won with three in a row, the
+ * game with three won boards in a row. The square of a move decides the board of the next move: after
+ * a move in the top right square of any board the opponent has to play in the top right board. If that
+ * board is already won or full, any open board may be played.
+ *
+ * Every board is stored as two 9-bit masks (one per player) and the macro board as masks of the boards
+ * won by X, won by O and closed (won or full), so the legal moves of a board are
+ * {@code ~(x | o) & 0x1FF} and a win is one table lookup.
+ *
+ * Cells are numbered {@code board * 9 + square}, boards and squares row by row from the top left.
+ * {@link #row(int)} and {@link #column(int)} give the position of a cell on the 9x9 grid.
+ */
+public final class UltimateBoard {
+
+    public static final int CELLS = 81;
+    static final int FULL = 0x1FF;
+
+    /**
+     * The 8 lines of a 3x3 board as 9-bit masks.
+     */
+    static final int[] LINES = {0007, 0070, 0700, 0111, 0222, 0444, 0421, 0124};
+
+    /**
+     * True for every 9-bit mask that contains a line.
+     */
+    private static final boolean[] WON = new boolean[FULL + 1];
+
+    private static final long[] ZOBRIST_X = new long[CELLS];
+    private static final long[] ZOBRIST_O = new long[CELLS];
+    private static final long[] ZOBRIST_FORCED = new long[10];
+
+    static {
+        for (int mask = 0; mask <= FULL; mask++) {
+            for (int line : LINES) {
+                if ((mask & line) == line) {
+                    WON[mask] = true;
+                    break;
+                }
+            }
+        }
+        Random random = new Random(0x5EEDL * CELLS);
+        for (int cell = 0; cell < CELLS; cell++) {
+            ZOBRIST_X[cell] = random.nextLong();
+            ZOBRIST_O[cell] = random.nextLong();
+        }
+        for (int i = 0; i < ZOBRIST_FORCED.length; i++) {
+            ZOBRIST_FORCED[i] = random.nextLong();
+        }
+    }
+
+    private final int[] xBoards;
+    private final int[] oBoards;
+    private int xMacro;
+    private int oMacro;
+    private int closed;
+
+    /**
+     * Board of the next move, -1 if any open board may be played.
+     */
+    private int forced = -1;
+    private int marks;
+    private long hash;
+
+    /**
+     * {@link #forced} before each move, so {@link #undo(int)} can restore it.
+     */
+    private final int[] forcedBefore;
+
+    /**
+     * Creates the empty board, X moves first.
+     */
+    public UltimateBoard() {
+        xBoards = new int[9];
+        oBoards = new int[9];
+        forcedBefore = new int[CELLS];
+    }
+
+    private UltimateBoard(UltimateBoard other) {
+        xBoards = other.xBoards.clone();
+        oBoards = other.oBoards.clone();
+        xMacro = other.xMacro;
+        oMacro = other.oMacro;
+        closed = other.closed;
+        forced = other.forced;
+        marks = other.marks;
+        hash = other.hash;
+        forcedBefore = other.forcedBefore.clone();
+    }
+
+    /**
+     * @return an independent copy, e.g. for a search on another thread.
+     */
+    public UltimateBoard copy() {
+        return new UltimateBoard(this);
+    }
+
+    /**
+     * Writes the legal moves into the array.
+     * @param moves array with room for {@link #CELLS} moves.
+     * @return number of legal moves, 0 if the game is over.
+     */
+    public int legalMoves(int[] moves) {
+        if (isGameOver()) {
+            return 0;
+        }
+        int count = 0;
+        int boards = forced >= 0 ? 1 << forced : ~closed & FULL;
+        for (; boards != 0; boards &= boards - 1) {
+            int board = Integer.numberOfTrailingZeros(boards);
+            for (int free = ~(xBoards[board] | oBoards[board]) & FULL; free != 0; free &= free - 1) {
+                moves[count++] = board * 9 + Integer.numberOfTrailingZeros(free);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the side to move may play the cell.
+     */
+    public boolean isLegal(int cell) {
+        if (cell < 0 || cell >= CELLS || isGameOver()) {
+            return false;
+        }
+        int board = cell / 9;
+        int bit = 1 << cell % 9;
+        return (forced < 0 ? (closed & 1 << board) == 0 : board == forced)
+                && ((xBoards[board] | oBoards[board]) & bit) == 0;
+    }
+
+    /**
+     * Places the mark of the side to move. The move has to be legal, see {@link #isLegal(int)}.
+     */
+    public void play(int cell) {
+        int board = cell / 9;
+        int square = cell % 9;
+        boolean xMoves = isXsTurn();
+        int[] boards = xMoves ? xBoards : oBoards;
+        boards[board] |= 1 << square;
+        hash ^= xMoves ? ZOBRIST_X[cell] : ZOBRIST_O[cell];
+        if (WON[boards[board]]) {
+            if (xMoves) {
+                xMacro |= 1 << board;
+            } else {
+                oMacro |= 1 << board;
+            }
+            closed |= 1 << board;
+        } else if ((xBoards[board] | oBoards[board]) == FULL) {
+            closed |= 1 << board;
+        }
+        forcedBefore[marks++] = forced;
+        forced = (closed & 1 << square) == 0 ? square : -1;
+    }
+
+    /**
+     * Takes back the last move, which was played on the given cell.
+     */
+    public void undo(int cell) {
+        int board = cell / 9;
+        int bit = 1 << cell % 9;
+        boolean xMoved = (xBoards[board] & bit) != 0;
+        if (xMoved) {
+            xBoards[board] &= ~bit;
+            hash ^= ZOBRIST_X[cell];
+        } else {
+            oBoards[board] &= ~bit;
+            hash ^= ZOBRIST_O[cell];
+        }
+        // No mark is placed on a closed board, so the move reopened it if it was closed.
+        xMacro &= ~(1 << board);
+        oMacro &= ~(1 << board);
+        closed &= ~(1 << board);
+        forced = forcedBefore[--marks];
+    }
+
+    /**
+     * @return key of the position, including the board of the next move.
+     */
+    public long key() {
+        return hash ^ ZOBRIST_FORCED[forced + 1];
+    }
+
+    public boolean isGameOver() {
+        return WON[xMacro] || WON[oMacro] || closed == FULL;
+    }
+
+    /**
+     * @return the winner, {@link Mark#BLANK} for a draw or a game that isn't over.
+     */
+    public Mark getWinner() {
+        return WON[xMacro] ? X : WON[oMacro] ? O : BLANK;
+    }
+
+    public boolean isXsTurn() {
+        return (marks & 1) == 0;
+    }
+
+    public Mark getMark(int cell) {
+        int bit = 1 << cell % 9;
+        return (xBoards[cell / 9] & bit) != 0 ? X : (oBoards[cell / 9] & bit) != 0 ? O : BLANK;
+    }
+
+    /**
+     * @return the winner of the board, {@link Mark#BLANK} if it's open or full without a winner.
+     */
+    public Mark getBoardWinner(int board) {
+        return (xMacro & 1 << board) != 0 ? X : (oMacro & 1 << board) != 0 ? O : BLANK;
+    }
+
+    /**
+     * @return true if no more marks can be placed on the board, because it's won or full.
+     */
+    public boolean isClosed(int board) {
+        return (closed & 1 << board) != 0;
+    }
+
+    /**
+     * @return board of the next move, -1 if any open board may be played.
+     */
+    public int getForcedBoard() {
+        return forced;
+    }
+
+    public int numOfMarks() {
+        return marks;
+    }
+
+    /**
+     * @return row of the cell on the 9x9 grid.
+     */
+    public static int row(int cell) {
+        return cell / 27 * 3 + cell % 9 / 3;
+    }
+
+    /**
+     * @return column of the cell on the 9x9 grid.
+     */
+    public static int column(int cell) {
+        return cell / 9 % 3 * 3 + cell % 3;
+    }
+
+    /**
+     * @return the cell at the row and column of the 9x9 grid.
+     */
+    public static int cell(int row, int column) {
+        return (row / 3 * 3 + column / 3) * 9 + row % 3 * 3 + column % 3;
+    }
+
+    int getXBoard(int board) {
+        return xBoards[board];
+    }
+
+    int getOBoard(int board) {
+        return oBoards[board];
+    }
+
+    int getXMacro() {
+        return xMacro;
+    }
+
+    int getOMacro() {
+        return oMacro;
+    }
+
+    int getClosed() {
+        return closed;
+    }
+
+    static boolean isWon(int mask) {
+        return WON[mask];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        String newLine = System.lineSeparator();
+        for (int row = 0; row < 9; row++) {
+            if (row > 0 && row % 3 == 0) {
+                builder.append("------+-------+------").append(newLine);
+            }
+            for (int column = 0; column < 9; column++) {
+                if (column > 0 && column % 3 == 0) {
+                    builder.append("| ");
+                }
+                Mark mark = getMark(cell(row, column));
+                builder.append(mark == BLANK ? '.' : mark.toString().charAt(0)).append(' ');
+            }
+            builder.append(newLine);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package game;
+
+import java.util.Random;
+
+import static game.Mark.*;
+
+/**
+ * Search for {@link UltimateBoard}, see {@link VariantSearch}. The game is far too large to be searched
+ * to the end like the classic board, so the search deepens until its time budget is used up. Positions
+ * at the depth limit are scored by the won boards, the lines of the macro board and the lines of the
+ * open boards.
+ *
+ * The {@link TranspositionTable} is shared by all searches, its keys include the board of the next move.
+ */
+public final class UltimateSearch extends VariantSearch {
+
+    /**
+     * Value of a won board, times the weight of the board.
+     */
+    private static final int BOARD_WON = 100;
+    private static final int MACRO_TWO = 300;
+    private static final int FREE_CHOICE = 25;
+
+    /**
+     * Boards in the center and the corners are in more lines of the macro board.
+     */
+    private static final int[] BOARD_WEIGHTS = {3, 2, 3, 2, 4, 2, 3, 2, 3};
+
+    /**
+     * Value of an open board for X, indexed by {@code xMask << 9 | oMask}.
+     */
+    private static final int[] LOCAL_VALUES = new int[1 << 18];
+
+    private static final TranspositionTable table = new TranspositionTable(1 << 18);
+
+    static {
+        for (int x = 0; x <= UltimateBoard.FULL; x++) {
+            for (int o = 0; o <= UltimateBoard.FULL; o++) {
+                if ((x & o) == 0) {
+                    LOCAL_VALUES[x << 9 | o] = lineValues(x, o, 1, 6);
+                }
+            }
+        }
+    }
+
+    private final UltimateBoard board;
+
+    /**
+     * @param position position to search, not modified.
+     * @param millis time budget, at least the first depth is always searched.
+     */
+    public UltimateSearch(UltimateBoard position, long millis) {
+        super(UltimateBoard.CELLS, table, millis);
+        this.board = position.copy();
+    }
+
+    /**
+     * Computes a move for the side to move like the difficulties of {@link AI}: "Easy" plays randomly,
+     * "Medium" looks 2 moves ahead, "Casual" plays a random move instead of the best one every fourth
+     * move. "Hard" and "Monte Carlo" both use the full search.
+     * @param position the position, not changed.
+     * @param difficulty 1 (Easy) to 5 (Casual).
+     * @param millis time budget of the search.
+     * @param random random generator of the calling thread.
+     * @return cell of the move, -1 if the game is over.
+     */
+    public static int move(UltimateBoard position, int difficulty, long millis, Random random) {
+        int[] legal = new int[UltimateBoard.CELLS];
+        int count = position.legalMoves(legal);
+        if (count == 0) {
+            return -1;
+        }
+        if (difficulty == 1 || difficulty == 5 && random.nextInt(4) == 0) {
+            return legal[random.nextInt(count)];
+        }
+        UltimateSearch search = new UltimateSearch(position, millis);
+        return search.run(difficulty == 2 ? 2 : UltimateBoard.CELLS);
+    }
+
+    @Override
+    int legalMoves(int[] moves) {
+        return board.legalMoves(moves);
+    }
+
+    @Override
+    void play(int cell) {
+        board.play(cell);
+    }
+
+    @Override
+    void undo(int cell) {
+        board.undo(cell);
+    }
+
+    @Override
+    boolean isGameOver() {
+        return board.isGameOver();
+    }
+
+    @Override
+    boolean isWon() {
+        return board.getWinner() != BLANK;
+    }
+
+    @Override
+    boolean isXsTurn() {
+        return board.isXsTurn();
+    }
+
+    @Override
+    int numOfMarks() {
+        return board.numOfMarks();
+    }
+
+    @Override
+    long key() {
+        return board.key();
+    }
+
+    /**
+     * Heuristic score for the side to move: won boards weighted by their position, macro lines with two
+     * won boards, lines with one or two marks on the open boards and the free choice of the board.
+     */
+    @Override
+    int evaluate() {
+        int xMacro = board.getXMacro();
+        int oMacro = board.getOMacro();
+        int drawn = board.getClosed() & ~(xMacro | oMacro);
+        int value = 0;
+        for (int line : UltimateBoard.LINES) {
+            if ((drawn & line) == 0) {
+                int x = Integer.bitCount(xMacro & line);
+                int o = Integer.bitCount(oMacro & line);
+                value += x == 2 && o == 0 ? MACRO_TWO : o == 2 && x == 0 ? -MACRO_TWO : 0;
+            }
+        }
+        for (int b = 0; b < 9; b++) {
+            int bit = 1 << b;
+            if ((xMacro & bit) != 0) {
+                value += BOARD_WON * BOARD_WEIGHTS[b];
+            } else if ((oMacro & bit) != 0) {
+                value -= BOARD_WON * BOARD_WEIGHTS[b];
+            } else if ((drawn & bit) == 0) {
+                value += LOCAL_VALUES[board.getXBoard(b) << 9 | board.getOBoard(b)] * BOARD_WEIGHTS[b];
+            }
+        }
+        boolean xToMove = board.isXsTurn();
+        if (board.getForcedBoard() < 0) {
+            value += xToMove ? FREE_CHOICE : -FREE_CHOICE;
+        }
+        return xToMove ? value : -value;
+    }
+
+    /**
+     * @return value of the lines of a 3x3 board for X, each line that only one player can still win
+     * counts one or two values for that player.
+     */
+    private static int lineValues(int x, int o, int one, int two) {
+        int value = 0;
+        for (int line : UltimateBoard.LINES) {
+            int xs = Integer.bitCount(x & line);
+            int os = Integer.bitCount(o & line);
+            if (os == 0) {
+                value += xs == 1 ? one : xs == 2 ? two : 0;
+            } else if (xs == 0) {
+                value -= os == 1 ? one : os == 2 ? two : 0;
+            }
+        }
+        return value;
+    }
+}
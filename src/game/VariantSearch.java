@@ -0,0 +1,292 @@
+package game;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Iterative deepening alpha-beta search for the game variants that aren't played on a {@link Field},
+ * bounded by a time budget: the search deepens until the budget is used up and plays the best move of
+ * the last completed depth. Scores are from the point of view of the side to move (negamax): a win is
+ * {@link #WIN} minus the plies to it, other positions are scored by {@link #evaluate()}.
+ *
+ * Moves are ordered by the best move of the {@link TranspositionTable}, then by the history heuristic
+ * and {@link #cellPrior(int)}. A search can be cancelled by interrupting the calling thread, it then
+ * throws a {@link CancellationException}.
+ *
+ * Subclasses provide the rules of their board through the abstract methods. The board is a private
+ * copy of the searched position, so a search never changes the position of its caller.
+ */
+abstract class VariantSearch {
+
+    static final int WIN = 1 << 20;
+    static final int DECISIVE = WIN / 2;
+
+    /**
+     * Returned by {@link #resolveThreats(int, int, int, int)} if the position has to be searched.
+     */
+    static final int NO_SCORE = Integer.MIN_VALUE;
+
+    private static final int CHECK_INTERVAL = 1024;
+    private static final Timeout TIMEOUT = new Timeout();
+
+    private final int cells;
+    private final TranspositionTable table;
+    private final long deadline;
+    private final Thread caller = Thread.currentThread();
+    private final int[][] moves;
+    private final int[][] history;
+
+    /**
+     * The budget is only checked after the first iteration, so there is always a move.
+     */
+    private boolean budgetActive = false;
+    private int unchecked;
+    private long nodes;
+    private int depth;
+    private int score;
+
+    /**
+     * Thrown through the search when the budget is used up. Preallocated, it carries no stack trace.
+     */
+    private static final class Timeout extends RuntimeException {
+        private Timeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * @param cells number of cells of the board, the most moves a position can have.
+     * @param table transposition table, may be shared with other searches of the same variant.
+     * @param millis time budget, at least the first depth is always searched.
+     */
+    VariantSearch(int cells, TranspositionTable table, long millis) {
+        this.cells = cells;
+        this.table = table;
+        this.deadline = System.nanoTime() + millis * 1_000_000;
+        this.moves = new int[cells + 1][cells];
+        this.history = new int[2][cells];
+    }
+
+    /**
+     * Writes the legal moves of the side to move into the array.
+     * @return number of legal moves, 0 if the game is over.
+     */
+    abstract int legalMoves(int[] moves);
+
+    abstract void play(int cell);
+
+    abstract void undo(int cell);
+
+    abstract boolean isGameOver();
+
+    /**
+     * @return true if the game is over and was won, by the player who made the last move.
+     */
+    abstract boolean isWon();
+
+    abstract boolean isXsTurn();
+
+    abstract int numOfMarks();
+
+    abstract long key();
+
+    /**
+     * @return heuristic score of a position at the depth limit, for the side to move.
+     */
+    abstract int evaluate();
+
+    /**
+     * Tactics that are resolved before the depth limit, e.g. a win on the next move.
+     * @return the score of the position, or {@link #NO_SCORE} if it has to be searched.
+     */
+    int resolveThreats(int remaining, int ply, int alpha, int beta) {
+        return NO_SCORE;
+    }
+
+    /**
+     * @return static ordering value of a move, for moves with the same history score.
+     */
+    int cellPrior(int cell) {
+        return 0;
+    }
+
+    /**
+     * Deepens until the budget is used up, the result is decided or the maximum depth is searched.
+     * @return cell of the best move of the last completed depth, -1 if the game is over.
+     */
+    public int run(int maxDepth) {
+        int[] rootMoves = new int[cells];
+        int count = legalMoves(rootMoves);
+        if (count == 0) {
+            return -1;
+        }
+        order(rootMoves, count, -1, history[isXsTurn() ? 0 : 1]);
+        long start = System.nanoTime();
+        int best = rootMoves[0];
+        for (int iteration = 1; iteration <= Math.min(maxDepth, cells - numOfMarks()); iteration++) {
+            int iterationBest = -1;
+            int alpha = -Integer.MAX_VALUE;
+            try {
+                for (int i = 0; i < count; i++) {
+                    int cell = rootMoves[i];
+                    play(cell);
+                    int value = -search(iteration - 1, 1, -Integer.MAX_VALUE, -alpha);
+                    undo(cell);
+                    if (value > alpha) {
+                        alpha = value;
+                        iterationBest = cell;
+                        // The best move is searched first in the next iteration.
+                        System.arraycopy(rootMoves, 0, rootMoves, 1, i);
+                        rootMoves[0] = cell;
+                    }
+                }
+            } catch (Timeout timeout) {
+                break;
+            }
+            best = iterationBest;
+            depth = iteration;
+            score = alpha;
+            budgetActive = true;
+            long now = System.nanoTime();
+            // Decided, or the next depth takes several times as long and can't finish anymore.
+            if (Math.abs(alpha) >= DECISIVE || now - start > (deadline - start) / 2) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Negamax alpha-beta search.
+     * @param remaining plies left until the position is evaluated.
+     * @param ply plies from the root.
+     * @return score for the side to move.
+     */
+    final int search(int remaining, int ply, int alpha, int beta) {
+        nodes++;
+        if (++unchecked == CHECK_INTERVAL) {
+            unchecked = 0;
+            checkBudget();
+        }
+        if (isGameOver()) {
+            // The game ended with the opponent's move.
+            return isWon() ? ply - WIN : 0;
+        }
+        int resolved = resolveThreats(remaining, ply, alpha, beta);
+        if (resolved != NO_SCORE) {
+            return resolved;
+        }
+        if (remaining == 0) {
+            return evaluate();
+        }
+
+        int alphaOriginal = alpha;
+        long key = key();
+        long entry = table.probe(key);
+        int tableMove = -1;
+        if (entry != TranspositionTable.MISS) {
+            tableMove = TranspositionTable.move(entry);
+            if (TranspositionTable.draft(entry) >= remaining) {
+                int stored = fromTableScore(TranspositionTable.score(entry), ply);
+                int flag = TranspositionTable.flag(entry);
+                if (flag == TranspositionTable.EXACT) {
+                    return stored;
+                } else if (flag == TranspositionTable.LOWER_BOUND) {
+                    alpha = Math.max(alpha, stored);
+                } else {
+                    beta = Math.min(beta, stored);
+                }
+                if (alpha >= beta) {
+                    return stored;
+                }
+            }
+        }
+
+        int[] cells = moves[ply];
+        int count = legalMoves(cells);
+        int[] scores = history[isXsTurn() ? 0 : 1];
+        order(cells, count, tableMove, scores);
+        int best = -Integer.MAX_VALUE;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            play(cell);
+            int value = -search(remaining - 1, ply + 1, -beta, -alpha);
+            undo(cell);
+            if (value > best) {
+                best = value;
+                bestMove = cell;
+            }
+            alpha = Math.max(alpha, value);
+            if (alpha >= beta) {
+                scores[cell] += remaining * remaining;
+                break;
+            }
+        }
+        int flag = best <= alphaOriginal ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(key, toTableScore(best, ply), flag, remaining, bestMove);
+        return best;
+    }
+
+    /**
+     * Puts the move of the table first and sorts the others by their history score, then by their
+     * {@link #cellPrior(int)} (insertion sort).
+     */
+    private void order(int[] cells, int count, int tableMove, int[] scores) {
+        for (int i = 1; i < count; i++) {
+            int cell = cells[i];
+            int value = priority(cell, tableMove, scores);
+            int j = i - 1;
+            while (j >= 0 && priority(cells[j], tableMove, scores) < value) {
+                cells[j + 1] = cells[j];
+                j--;
+            }
+            cells[j + 1] = cell;
+        }
+    }
+
+    private int priority(int cell, int tableMove, int[] scores) {
+        return cell == tableMove ? Integer.MAX_VALUE : scores[cell] * 8 + cellPrior(cell);
+    }
+
+    private void checkBudget() {
+        if (caller.isInterrupted()) {
+            throw new CancellationException("AI search cancelled.");
+        }
+        if (budgetActive && System.nanoTime() >= deadline) {
+            throw TIMEOUT;
+        }
+    }
+
+    /**
+     * Win scores are stored relative to the position, so an entry stays valid at another ply.
+     */
+    private static int toTableScore(int score, int ply) {
+        return score >= DECISIVE ? score + ply : score <= -DECISIVE ? score - ply : score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        return score >= DECISIVE ? score - ply : score <= -DECISIVE ? score + ply : score;
+    }
+
+    /**
+     * @return depth of the last completed iteration.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return score of the best move at {@link #getDepth()}, for the side to move.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return positions searched, for nodes per second.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+}
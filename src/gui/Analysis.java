@@ -0,0 +1,122 @@
+package gui;
+
+import game.AI;
+import game.Field;
+import game.Mark;
+import game.MoveScores;
+import game.Position;
+import javafx.application.Platform;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analysis mode: shows the score of every free tile for the side to move, see
+ * {@link TicTacToe.Tile#showAnalysis(String, String)}. "W3" wins in 3 plies, "L2" loses in 2, "D" is a draw.
+ * On boards larger than 3x3 the search often can't see the end of the game, those moves show "~" and the best
+ * of them are highlighted.
+ *
+ * The moves are scored with {@link AI#scoreMoves(Field, Mark, boolean)} on a background thread after
+ * every move, the FX thread only draws the result. Results are cached per position, so going back to a
+ * position (e.g. in a new game) shows them at once. An analysis that is still running when the board
+ * changes is cancelled.
+ */
+final class Analysis {
+
+    private static final int CACHE_SIZE = 4096;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Analysis");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Least recently used positions are dropped first. Only used on the FX thread.
+     */
+    private static final Map<Position, MoveScores> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Position, MoveScores> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static boolean enabled = false;
+    private static Future<?> running;
+
+    /**
+     * Incremented for every board change, so a result that arrives for an older board is dropped.
+     */
+    private static int analysisId = 0;
+
+    private Analysis() {
+    }
+
+    static void setEnabled(boolean on) {
+        enabled = on;
+        update();
+    }
+
+    /**
+     * Analyses the current board, called on the FX thread whenever it changed.
+     * Returns at once, the tiles are updated when the result is ready.
+     */
+    static void update() {
+        int id = ++analysisId;
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+        TicTacToe.clearAnalysis();
+        Field field = TicTacToe.field;
+        // While the AI is thinking, its search would only be slowed down.
+        if (!enabled || field == null || TicTacToe.getVariant() != null || field.isGameOver()
+                || TicTacToe.isAITurn()) {
+            return;
+        }
+        Position position = Position.of(field);
+        MoveScores cached = cache.get(position);
+        if (cached != null) {
+            show(cached, field.getCells());
+            return;
+        }
+        Field board = field.copy();
+        Mark mark = board.isXsTurn() ? Mark.X : Mark.O;
+        running = executor.submit(() -> {
+            MoveScores scores;
+            try {
+                scores = AI.scoreMoves(board, mark, true);
+            } catch (CancellationException e) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (id == analysisId) {
+                    running = null;
+                    cache.put(position, scores);
+                    show(scores, board.getCells());
+                }
+            });
+        });
+    }
+
+    private static void show(MoveScores scores, int cells) {
+        for (int i = 0; i < scores.getMoveCount(); i++) {
+            int cell = scores.getMove(i);
+            int outcome = scores.getOutcome(cell);
+            if (outcome > 0) {
+                TicTacToe.showAnalysis(cell, "W" + outcome, "analysisWin");
+            } else if (outcome < 0) {
+                TicTacToe.showAnalysis(cell, "L" + -outcome, "analysisLoss");
+            } else if (cells <= 9) {
+                TicTacToe.showAnalysis(cell, "D", "analysisDraw");
+            } else {
+                boolean best = scores.getScore(cell) == scores.getBestScore();
+                TicTacToe.showAnalysis(cell, "~", best ? "analysisBest" : "analysisDraw");
+            }
+        }
+    }
+}
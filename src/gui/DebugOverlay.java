@@ -0,0 +1,47 @@
+package gui;
+
+import game.SearchStats;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Label;
+import javafx.util.Duration;
+
+/**
+ * Shows the {@link SearchStats} of the last AI move above the board, toggled with F3.
+ * The search is only counted while the overlay is shown (or if enabled with {@code -Dtictactoe.stats=true}),
+ * and the label is refreshed a few times per second instead of on every node.
+ */
+final class DebugOverlay extends Label {
+
+    private static final Duration REFRESH = Duration.millis(250);
+
+    private final Timeline refresh = new Timeline(new KeyFrame(REFRESH, e -> update()));
+    private final boolean countAlways = SearchStats.isCounting();
+
+    DebugOverlay() {
+        getStyleClass().add("debugOverlay");
+        setMouseTransparent(true);
+        setVisible(false);
+        refresh.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    void toggle() {
+        boolean show = !isVisible();
+        setVisible(show);
+        SearchStats.setCounting(show || countAlways);
+        if (show) {
+            update();
+            refresh.play();
+        } else {
+            refresh.stop();
+        }
+    }
+
+    private void update() {
+        SearchStats.Move move = SearchStats.getLastMove();
+        setText(String.format("Last AI move: %,d nodes, %,d cutoffs, %,d TT hits%n"
+                        + "depth %d, %.1f ms, %,.0f nodes/s, TT hit rate %.0f %%",
+                move.getNodes(), move.getCutoffs(), move.getTableHits(), move.getMaxDepth(),
+                move.getNanos() / 1e6, move.getNodesPerSecond(), move.getTableHitRate() * 100));
+    }
+}
@@ -0,0 +1,89 @@
+package gui;
+
+import archive.GameArchive;
+import archive.GameRecord;
+import log.GameLog;
+import log.Level;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the finished games into a {@link GameArchive} on a background thread.
+ * The archive is {@code ~/.tictactoe/games} unless the system property {@code tictactoe.archive}
+ * names another one, {@code tictactoe.archive=false} disables saving.
+ */
+final class GameRecorder {
+
+    private static final String ARCHIVE = System.getProperty("tictactoe.archive",
+            Paths.get(System.getProperty("user.home"), ".tictactoe", "games").toString());
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Game archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opened by the writer thread with the first game, null if saving is disabled or failed.
+     */
+    private static GameArchive archive;
+    private static boolean opened = false;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(GameRecorder::close, "Game archive shutdown"));
+    }
+
+    private GameRecorder() {
+    }
+
+    /**
+     * Appends the game to the archive in the background.
+     */
+    static void save(GameRecord record) {
+        if (ARCHIVE.equals("false")) {
+            return;
+        }
+        writer.execute(() -> {
+            GameArchive games = open();
+            if (games == null) {
+                return;
+            }
+            try {
+                long number = games.append(record);
+                GameLog.log(Level.DEBUG, "Saved game " + number + " to " + ARCHIVE);
+            } catch (IOException e) {
+                GameLog.log(Level.ERROR, "Could not save game: " + e.getMessage());
+            }
+        });
+    }
+
+    private static GameArchive open() {
+        if (!opened) {
+            opened = true;
+            Path base = Paths.get(ARCHIVE);
+            try {
+                archive = new GameArchive(base);
+            } catch (IOException e) {
+                GameLog.log(Level.ERROR, "Could not open game archive " + base + ": " + e.getMessage());
+            }
+        }
+        return archive;
+    }
+
+    private static void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.SECONDS);
+            if (archive != null) {
+                archive.close();
+            }
+        } catch (InterruptedException | IOException e) {
+            // Nothing left to do while the VM shuts down.
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package gui;
+
+import game.Mark;
+import game.QubicBoard;
+import game.QubicSearch;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+import log.GameLog;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static game.Mark.*;
+
+/**
+ * Qubic, see {@link QubicBoard}. The four layers of the cube are 4x4 grids of tiles, two next to each
+ * other in two rows. The line that won the game is highlighted, it usually runs through several layers.
+ */
+final class QubicView extends VariantBoard {
+
+    private static final int TILE_SIZE = 60;
+    private static final int LAYER_GAP = 20;
+
+    /**
+     * Time the AI searches per move, short enough to stay interactive.
+     */
+    private static final long SEARCH_MILLIS = 300;
+
+    private final Button[] tiles = new Button[QubicBoard.CELLS];
+    private QubicBoard board = new QubicBoard();
+
+    QubicView() {
+        setHgap(LAYER_GAP);
+        setVgap(LAYER_GAP / 2);
+        for (int layer = 0; layer < QubicBoard.SIZE; layer++) {
+            GridPane grid = new GridPane();
+            for (int square = 0; square < 16; square++) {
+                int cell = layer * 16 + square;
+                Button tile = new Button();
+                tile.setMinSize(TILE_SIZE, TILE_SIZE);
+                tile.setMaxSize(TILE_SIZE, TILE_SIZE);
+                tile.getStyleClass().add("tile");
+                // Same scaling as the tiles of the larger boards.
+                tile.setStyle("-fx-font-size: " + (TILE_SIZE * 3 / 4) + ";");
+                tile.setOnMouseClicked(e -> {
+                    // Wait for the AI to finish its move.
+                    if (TicTacToe.isAITurn() || board.isGameOver() || board.getMark(cell) != BLANK) {
+                        return;
+                    }
+                    Resources.turnSound.play();
+                    play(cell);
+                });
+                GridPane.setConstraints(tile, square % 4, square / 4);
+                grid.getChildren().add(tile);
+                tiles[cell] = tile;
+            }
+            Label name = new Label("Layer " + (layer + 1));
+            name.getStyleClass().add("qubicLayer");
+            VBox box = new VBox(name, grid);
+            GridPane.setConstraints(box, layer % 2, layer / 2);
+            getChildren().add(box);
+        }
+        refresh();
+    }
+
+    @Override
+    String getName() {
+        return "Qubic";
+    }
+
+    @Override
+    void newGame() {
+        board = new QubicBoard();
+        refresh();
+    }
+
+    @Override
+    boolean isGameOver() {
+        return board.isGameOver();
+    }
+
+    @Override
+    Mark getWinner() {
+        return board.getWinner();
+    }
+
+    @Override
+    boolean isXsTurn() {
+        return board.isXsTurn();
+    }
+
+    @Override
+    Callable<Runnable> searchMove(int difficulty) {
+        QubicBoard position = board.copy();
+        return () -> {
+            int cell = QubicSearch.move(position, difficulty, SEARCH_MILLIS, ThreadLocalRandom.current());
+            return () -> play(cell);
+        };
+    }
+
+    /**
+     * Places the mark of the side to move on a free cell. The log gets the layer as part of the row,
+     * layers are stacked from top to bottom.
+     */
+    private void play(int cell) {
+        Mark mark = board.isXsTurn() ? X : O;
+        board.play(cell);
+        GameLog.move(mark, cell / 4, cell % 4);
+        refresh();
+        TicTacToe.variantMoved();
+    }
+
+    /**
+     * Shows the marks and the winning line.
+     */
+    private void refresh() {
+        long line = board.getWinningLine();
+        for (int cell = 0; cell < QubicBoard.CELLS; cell++) {
+            tiles[cell].setText("" + board.getMark(cell));
+            tiles[cell].getStyleClass().remove("winningTile");
+            if ((line & 1L << cell) != 0) {
+                tiles[cell].getStyleClass().add("winningTile");
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package gui;
+
+import javafx.scene.image.Image;
+import javafx.scene.media.AudioClip;
+import javafx.scene.text.Font;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Images, fonts, sounds and the stylesheet of the game.
+ * Everything is decoded once and shared by all games afterwards, so restarting a game doesn't load
+ * anything again. {@link #preload()} decodes them in parallel in the background, {@link #load()} waits for it.
+ */
+final class Resources {
+
+    private static final String[] FONTS = {
+            "/resources/fonts/FuturaMed.ttf",   // Futura MdCn BT
+            "/resources/fonts/FuturaHeavy.ttf", // Futura Hv BT
+            "/resources/fonts/FuturaBold.ttf"   // Futura BdCn BT
+    };
+
+    static String stylesheet;
+    static Image windowIcon;
+    static Image gameOverGraphic;
+    static AudioClip turnSound;
+
+    private static CompletableFuture<Void> loading;
+
+    private Resources() {
+    }
+
+    /**
+     * Starts loading the fonts, the images and the sound in parallel on the threads of the common
+     * pool, does nothing if that happened already. None of them need the JavaFX Application thread,
+     * but the JavaFX runtime has to be started: before that, the threads would initialise its
+     * classes concurrently and deadlock. So this is called from {@link TicTacToe#init()}.
+     * @return completes when everything is loaded.
+     */
+    static synchronized CompletableFuture<Void> preload() {
+        if (loading == null) {
+            stylesheet = url("/gui/stylesheet.css");
+            loading = CompletableFuture.allOf(
+                    CompletableFuture.runAsync(() -> {
+                        for (String font : FONTS) {
+                            loadFont(font);
+                        }
+                    }),
+                    CompletableFuture.runAsync(() -> {
+                        windowIcon = new Image(url("/resources/img/user-icon.png"));
+                        gameOverGraphic = new Image(url("/resources/img/iconSmall.png"));
+                    }),
+                    CompletableFuture.runAsync(() -> turnSound = new AudioClip(url("/resources/sfx/turn.wav"))));
+        }
+        return loading;
+    }
+
+    /**
+     * Loads all resources, or waits until {@link #preload()} has loaded them.
+     * Has to be called before the first scene is created, because the stylesheet refers to the fonts by name.
+     */
+    static void load() {
+        try {
+            preload().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static void loadFont(String font) {
+        try (InputStream stream = Resources.class.getResourceAsStream(font)) {
+            Font.loadFont(stream, 12);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load font " + font, e);
+        }
+    }
+
+    private static String url(String resource) {
+        return Resources.class.getResource(resource).toExternalForm();
+    }
+}
@@ -0,0 +1,95 @@
+package gui;
+
+import game.AI;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import log.GameLog;
+import log.Level;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Startup pipeline of the game and its timing report.
+ * {@link #begin()} warms up the AI ({@link AI#warmUp()}) in the background before the JavaFX runtime
+ * is started, the {@link Resources} are preloaded as soon as it runs (see {@link TicTacToe#init()}).
+ * The milestones are logged at INFO level in milliseconds since the JVM was started: start() called,
+ * scene built, first frame and the first AI move.
+ */
+final class Startup {
+
+    private static final long JVM_START = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private static long started;
+    private static long sceneBuilt;
+    private static final AtomicBoolean firstAIMove = new AtomicBoolean();
+
+    private Startup() {
+    }
+
+    /**
+     * @return milliseconds since the JVM was started.
+     */
+    static long sinceLaunch() {
+        return System.currentTimeMillis() - JVM_START;
+    }
+
+    /**
+     * Starts the AI warm-up. The warm-up thread has the lowest priority, so it doesn't hold up the window.
+     */
+    static void begin() {
+        Thread warmUp = new Thread(() -> {
+            long start = System.nanoTime();
+            AI.warmUp();
+            GameLog.log(Level.DEBUG, String.format("Startup: AI warm-up took %d ms",
+                    (System.nanoTime() - start) / 1_000_000));
+        }, "AI warm-up");
+        warmUp.setDaemon(true);
+        warmUp.setPriority(Thread.MIN_PRIORITY);
+        warmUp.start();
+    }
+
+    static void started() {
+        started = sinceLaunch();
+    }
+
+    static void sceneBuilt() {
+        sceneBuilt = sinceLaunch();
+    }
+
+    /**
+     * Logs the time of the first frame of the scene and runs the action after it, so e.g. the first
+     * AI search doesn't delay the window.
+     * @param scene the scene that is about to be shown.
+     * @param then action to run on the JavaFX Application thread after the first frame.
+     */
+    static void afterFirstFrame(Scene scene, Runnable then) {
+        AtomicBoolean done = new AtomicBoolean();
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (done.getAndSet(true)) {
+                return;
+            }
+            GameLog.log(Level.INFO, String.format("Startup: start() after %d ms, scene built after %d ms, "
+                    + "first frame after %d ms", started, sceneBuilt, sinceLaunch()));
+            // The frame is rendered after the layout pass. The listener can't be removed while the
+            // scene calls its listeners, so that happens afterwards too.
+            Platform.runLater(() -> {
+                scene.removePostLayoutPulseListener(listener[0]);
+                then.run();
+            });
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /**
+     * Logs the first AI move, called on the thread that searched it.
+     * @param nanos duration of the search.
+     */
+    static void aiMoved(long nanos) {
+        if (firstAIMove.compareAndSet(false, true)) {
+            GameLog.log(Level.INFO, String.format("Startup: first AI move after %d ms, searched in %.1f ms",
+                    sinceLaunch(), nanos / 1e6));
+        }
+    }
+}
@@ -1,103 +1,249 @@
 package gui;
 
 import static game.Mark.*;
+import archive.GameRecord;
 import game.Mark;
 import game.AI;
 import game.Field;
-import javafx.animation.AnimationTimer;
+import game.FieldListener;
+import game.SearchStats;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.Menu;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.*;
-import javafx.scene.media.AudioClip;
 import javafx.scene.paint.Paint;
 import javafx.stage.Stage;
+import log.GameLog;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class TicTacToe extends Application {
 
     public static Field field;
     private static GridPane gameBoard;
+    private static Tile[] tiles;
+    private static Alert gameOverAlert;
     private static BorderPane frame;
-    private AnimationTimer timer;
     private static StatusDisplay status;
+    private static TicTacToe app;
+
+    /**
+     * Board of the variant that is played instead of the field, null in the classic game.
+     */
+    private static VariantBoard variant;
 
     private static final int WINDOW_WIDTH = 650;
     private static final int WINDOW_HEIGHT = 750;
-    private final static int BOARD_SIZE = 3;
+    private static final int BOARD_AREA = 600;
+    private static int rows = 3;
+    private static int columns = 3;
+    private static int winLength = 3;
     private static boolean pvp = false;
     private static int difficulty = 3; // Default difficulty is 'Hard'.
-    private static boolean aiTurn = true;
+    private static final String[] DIFFICULTIES = {"Easy", "Medium", "Hard", "Monte Carlo", "Casual"};
     private static Mark markAI = X;
 
     /**
-     * Additional flag needed to make sure the method gameOver() which displays
-     * the game over alert is only executed once. Otherwise AnimationTimers
-     * handle() method was executing it multiple times.
+     * Cells of the moves of the current game in the order they were played, saved when the game is over.
+     */
+    private static int[] moves;
+    private static int moveCount;
+
+    /**
+     * The AI search runs on this thread so the JavaFX Application thread never waits for it.
+     * The move is applied on the Application thread afterwards with {@link Platform#runLater(Runnable)}.
+     */
+    private static final ExecutorService aiExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AI search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Search that is currently running, null if the AI isn't thinking.
+     */
+    private static Future<?> aiSearch;
+
+    /**
+     * Incremented for every search and every cancellation, so a move that arrives after its
+     * search was cancelled (e.g. by a restart) is recognised and dropped.
+     */
+    private static int aiSearchId = 0;
+
+    /**
+     * Reacts to the moves on the current field. The status, the AI and the game over alert are
+     * only updated when something happens, nothing is polled.
      */
-    private static boolean gameOverAlertShown = false;
+    private static final FieldListener gameEvents = new FieldListener() {
+        @Override
+        public void markPlaced(Field changed, int row, int column, Mark mark) {
+            moves[moveCount++] = row * columns + column;
+        }
+
+        @Override
+        public void turnChanged(Field changed, Mark mark) {
+            StatusDisplay.updateStatus();
+            Analysis.update();
+            if (isAITurn()) {
+                playAIMove();
+            }
+        }
+
+        @Override
+        public void gameOver(Field changed, Mark winner) {
+            StatusDisplay.updateStatus();
+            Analysis.update();
+            GameLog.result(changed.getGameState());
+            GameRecorder.save(GameRecord.of(changed, pvp, difficulty, markAI, Arrays.copyOf(moves, moveCount)));
+            app.gameOver(changed.getGameState());
+        }
+    };
 
     public static void main(String[] args) {
+        Startup.begin();
         launch(args);
     }
 
+    /**
+     * Runs on the launcher thread once the JavaFX runtime is started, before {@link #start(Stage)}.
+     */
+    @Override
+    public void init() {
+        Resources.preload();
+    }
+
     @Override
     public void start(Stage primaryStage) {
+        app = this;
+        Startup.started();
+        Resources.load();
         frame = new BorderPane();
         status = new StatusDisplay();
-        Scene scene = new Scene(frame);
+        DebugOverlay debugOverlay = new DebugOverlay();
+        StackPane root = new StackPane(frame, debugOverlay);
+        StackPane.setAlignment(debugOverlay, Pos.TOP_LEFT);
+        StackPane.setMargin(debugOverlay, new Insets(50, 0, 0, 10));
+        Scene scene = new Scene(root);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (e.getCode() == KeyCode.F3) {
+                debugOverlay.toggle();
+            }
+        });
+        SearchStats.register();
 
         frame.setTop(initialiseFullTopMenu());
         frame.setCenter(createBoard());
         frame.setBottom(status);
 
         scene.setFill(Paint.valueOf("#f5f5f5"));
-        scene.getStylesheets().add(getClass().getResource("stylesheet.css").toExternalForm());
+        scene.getStylesheets().add(Resources.stylesheet);
         primaryStage.setTitle("Tic-Tac-Toe");
-        primaryStage.getIcons().add(new Image(this.getClass().getResource("/resources/img/user-icon.png").toExternalForm()));
+        primaryStage.getIcons().add(Resources.windowIcon);
         primaryStage.setResizable(false);
         primaryStage.setScene(scene);
         primaryStage.setWidth(WINDOW_WIDTH);
         primaryStage.setHeight(WINDOW_HEIGHT);
-        System.out.println("\n--STARTING NEW GAME: PvE--");
-        field.print();
+        GameLog.mode("Starting new game: PvE");
+        GameLog.board(field);
 
-        runGameLoop();
+        StatusDisplay.updateStatus();
+        Startup.sceneBuilt();
+        // If the AI begins, its first search starts after the window is drawn.
+        Startup.afterFirstFrame(scene, () -> {
+            if (isAITurn()) {
+                playAIMove();
+            }
+        });
         primaryStage.show();
     }
 
     public static final class Tile extends Button {
 
         private static final int TILE_SIZE = 200;
+        private final int size;
         private Mark mark;
-        private final AudioClip turn = new AudioClip(getClass().getResource("/resources/sfx/turn.wav").toExternalForm());
 
         public Tile(int row, int col) {
+            this(row, col, TILE_SIZE);
+        }
+
+        public Tile(int row, int col, int size) {
+            this.size = size;
             this.mark = field.getMark(row, col);
-            this.setMinSize(TILE_SIZE, TILE_SIZE);
+            this.setMinSize(size, size);
+            this.setMaxSize(size, size);
             this.getStyleClass().add("tile");
+            if (size != TILE_SIZE) {
+                // The stylesheet is made for the 3x3 board, scale the font down for smaller tiles.
+                this.setStyle("-fx-font-size: " + (size * 3 / 4) + ";");
+            }
             this.setText("" + this.mark);
-            frame.setCenter(gameBoard);
 
             this.setOnMouseClicked(e -> {
+                // Wait for the AI to finish its move.
+                if (isAITurn() || field.isGameOver()) {
+                    return;
+                }
                 this.mark = field.isXsTurn() ? X : O;
                 if (field.available(row, col)) {
-                    turn.play();
+                    Resources.turnSound.play();
                     setTileAndField(row, col, this.mark, this);
-                    setAITurn(true);
                 }
             });
         }
 
+        /**
+         * Sets the tile first, the field then fires the events that update the status and start the AI.
+         */
         public void setTileAndField(int row, int col, Mark mark, Tile tile) {
-            field.setMark(row, col, mark);
+            tile.clearAnalysis();
             tile.setText("" + mark);
-            field.print();
+            GameLog.move(mark, row, col);
+            field.setMark(row, col, mark);
+            GameLog.board(field);
+        }
+
+        /**
+         * Clears the tile for a new game.
+         */
+        public void reset() {
+            this.mark = BLANK;
+            this.setText("" + BLANK);
+            clearAnalysis();
+        }
+
+        /**
+         * Shows the analysis of the move on this free tile instead of its (blank) text.
+         * @param text score of the move, see {@link Analysis}.
+         * @param styleClass style class of the score.
+         */
+        public void showAnalysis(String text, String styleClass) {
+            Label score = new Label(text);
+            score.getStyleClass().addAll("analysis", styleClass);
+            score.setStyle("-fx-font-size: " + Math.max(8, size / 5) + ";");
+            this.setGraphic(score);
+            this.setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        }
+
+        /**
+         * Removes the analysis shown by {@link #showAnalysis(String, String)}.
+         */
+        public void clearAnalysis() {
+            if (this.getGraphic() != null) {
+                this.setGraphic(null);
+                this.setContentDisplay(ContentDisplay.TEXT_ONLY);
+            }
         }
     }
 
@@ -116,25 +262,28 @@ public class TicTacToe extends Application {
 
         /**
          * Updates the Status message.
-         * Executed by the AnimationTimer in runGameLoop().
+         * Executed when the turn changes, the game ends, the AI starts thinking or a new game starts.
          */
         public static void updateStatus() {
+            boolean gameOver = variant != null ? variant.isGameOver() : field.isGameOver();
+            Mark winner = variant != null ? variant.getWinner() : field.getWinner();
+            boolean xsTurn = variant != null ? variant.isXsTurn() : field.isXsTurn();
             // Checking for game over in PvP or PvE mode to display
             // appropriate message.
-            if (pvp && field.getGameState().equals("Draw")) {
+            if (pvp && gameOver && winner == BLANK) {
                 statusText.setText("DRAW");
                 return;
-            } else if (pvp && field.isGameOver()) {
-                statusText.setText("PLAYER " + field.getGameState().toUpperCase());
+            } else if (pvp && gameOver) {
+                statusText.setText("PLAYER " + winner + " WINS");
                 return;
             }
-            if (!pvp & field.isGameOver()) {
-                if (field.getGameState().equals("Draw")) {
+            if (!pvp & gameOver) {
+                if (winner == BLANK) {
                     statusText.setText("YOU MANAGED TO DRAW AGAINST THE AI.");
                     return;
                 }
                 Mark markPlayer = markAI == O ? X : O;
-                boolean playerWonGame = field.getGameState().contains(markPlayer.toString() + " wins");
+                boolean playerWonGame = winner == markPlayer;
                 statusText.setText(playerWonGame ? "CONGRATS! YOU DEFEATED THE AI." : "OH NO, THE AI DEFEATED YOU!");
                 return;
             }
@@ -144,120 +293,251 @@ public class TicTacToe extends Application {
             // In PvE mode the status instead displays the difficulty of the AI
             // you are playing against.
             if (pvp) {
-                statusText.setText(field.isXsTurn() ? "PLAYER X TURN" : "PLAYER O TURN");
+                statusText.setText(xsTurn ? "PLAYER X TURN" : "PLAYER O TURN");
+            } else if (aiSearch != null) {
+                statusText.setText("THE AI IS THINKING...");
             } else {
-                String pveStatus = difficulty == 1 ? "PLAYING AGAINST AI DIFFICULTY EASY " :
-                        difficulty == 3 ? "PLAYING AGAINST AI DIFFICULTY HARD " : "PLAYING AGAINST AI DIFFICULTY MEDIUM ";
-                statusText.setText(pveStatus + "(" + markAI + ")");
+                String pveStatus = "PLAYING AGAINST AI DIFFICULTY " + DIFFICULTIES[difficulty - 1].toUpperCase();
+                statusText.setText(pveStatus + " (" + markAI + ")");
             }
         }
     }
 
+    /**
+     * Creates the field and the tiles for the current board size.
+     * Only needed when the size changes, otherwise use {@link #resetBoard()}.
+     */
     public static GridPane createBoard() {
-        field = new Field();
+        field = new Field(rows, columns, winLength);
+        field.addListener(gameEvents);
+        tiles = new Tile[rows * columns];
+        moves = new int[rows * columns];
+        moveCount = 0;
         gameBoard = new GridPane();
         gameBoard.setAlignment(Pos.CENTER);
         gameBoard.setPadding(new Insets(10, 0, 0, 0));
 
-        for(int row = 0; row < BOARD_SIZE; row++) {
-            for (int col = 0; col < BOARD_SIZE; col++) {
-                Tile tile = new Tile(row, col);
+        // The tiles of the classic board are 200px, larger boards are scaled to fit the same area.
+        int tileSize = Math.min(Tile.TILE_SIZE, BOARD_AREA / Math.max(rows, columns));
+        for(int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                Tile tile = new Tile(row, col, tileSize);
                 // Need to switch row & col so it matches field array.
                 GridPane.setConstraints(tile, col, row);
                 gameBoard.getChildren().add(tile);
+                tiles[row * columns + col] = tile;
             }
         }
         return gameBoard;
     }
 
+    /**
+     * Starts a new game on the existing field and tiles, nothing is allocated.
+     * @return false if the board size changed and {@link #createBoard()} is needed instead.
+     */
+    public static boolean resetBoard() {
+        if (field == null || field.getRows() != rows || field.getColumns() != columns
+                || field.getWinLength() != winLength) {
+            return false;
+        }
+        field.clear();
+        moveCount = 0;
+        for (Tile tile : tiles) {
+            tile.reset();
+        }
+        return true;
+    }
+
     private void setGameMode(String mode) {
         pvp = mode.equals("pvp");
     }
 
-    public static void setAITurn(boolean isAITurn) {
-        aiTurn = isAITurn;
+    /**
+     * Changes the board for the next game.
+     * @param rows number of rows.
+     * @param columns number of columns.
+     * @param winLength number of marks in a row needed to win.
+     */
+    private void setBoard(int rows, int columns, int winLength) {
+        TicTacToe.rows = rows;
+        TicTacToe.columns = columns;
+        TicTacToe.winLength = winLength;
+        variant = null;
+        GameLog.mode("Board set to " + rows + "x" + columns + ", " + winLength + " in a row");
+        restartGame();
+    }
+
+    /**
+     * Shows the analysis of a free cell on its tile, see {@link Analysis}.
+     */
+    static void showAnalysis(int cell, String text, String styleClass) {
+        tiles[cell].showAnalysis(text, styleClass);
+    }
+
+    /**
+     * Removes the analysis from all tiles.
+     */
+    static void clearAnalysis() {
+        for (Tile tile : tiles) {
+            tile.clearAnalysis();
+        }
+    }
+
+    /**
+     * @return true if the game is running in PvE mode and the AI has to make the next move.
+     */
+    public static boolean isAITurn() {
+        if (variant != null) {
+            return !pvp && !variant.isGameOver() && (variant.isXsTurn() ? X : O) == markAI;
+        }
+        return !pvp && !field.isGameOver() && (field.isXsTurn() ? X : O) == markAI;
+    }
+
+    /**
+     * @return board of the variant that is played, null in the classic game.
+     */
+    static VariantBoard getVariant() {
+        return variant;
+    }
+
+    /**
+     * Called by the {@link VariantBoard} after every move, does what the events of the field do in the
+     * classic game. Variant games aren't saved to the archive, which only holds games on a field.
+     */
+    static void variantMoved() {
+        StatusDisplay.updateStatus();
+        if (variant.isGameOver()) {
+            Mark winner = variant.getWinner();
+            String state = winner == BLANK ? "Draw" : winner + " wins";
+            GameLog.result(state);
+            app.gameOver(state);
+        } else if (isAITurn()) {
+            playAIMove();
+        }
+    }
+
+    /**
+     * Plays the variant instead of the field from the next game on.
+     */
+    private void setVariant(VariantBoard board) {
+        variant = board;
+        GameLog.mode("Board set to " + board.getName());
+        restartGame();
     }
 
     private void setDifficulty(int difficulty) {
         TicTacToe.difficulty = difficulty;
-        System.out.print("\n--DIFFICULTY SET TO: ");
-        System.out.println(difficulty == 1 ? "EASY--" : difficulty == 3 ? "HARD--" : "MEDIUM--");
+        GameLog.mode("Difficulty set to " + DIFFICULTIES[difficulty - 1]);
         restartGame();
     }
 
+    /**
+     * Starts the AI search in the background on a copy of the field or the variant board.
+     * Does nothing if a search is already running.
+     */
     public static void playAIMove() {
-        int[] move = AI.getMoveByDifficulty(field, markAI, difficulty);
-        int row = move[0];
-        int col = move[1];
-        System.out.print("Making move level: ");
-        System.out.println(difficulty == 1 ? "\"Easy\"" : difficulty == 3 ? "\"Hard\"" : "\"Medium.\"");
-
-        for (Node child : gameBoard.getChildren()) {
-            if (GridPane.getRowIndex(child) == row
-                    && GridPane.getColumnIndex(child) == col) {
-                Tile ai = (Tile) child;
-                ai.setTileAndField(row, col, markAI, ai);
-                frame.setCenter(gameBoard);
-            }
+        if (aiSearch != null) {
+            return;
         }
+        int level = difficulty;
+        Callable<Runnable> search = variant != null ? variant.searchMove(level) : searchMove(level);
+        int searchId = ++aiSearchId;
+        aiSearch = aiExecutor.submit(() -> {
+            long start = System.nanoTime();
+            Runnable move = search.call();
+            long nanos = System.nanoTime() - start;
+            GameLog.aiMove(level, nanos);
+            Startup.aiMoved(nanos);
+            Platform.runLater(() -> applyAIMove(searchId, move));
+            return null;
+        });
+        StatusDisplay.updateStatus();
     }
 
-    private void runGameLoop() {
-        createBoard();
-
-        timer = new AnimationTimer() {
-            @Override
-            public void handle(long now) {
-                boolean gameInProgress = !field.isGameOver();
-                StatusDisplay.updateStatus();
-                if (!gameInProgress && !gameOverAlertShown) {
-                    this.stop();
-                    System.out.println(field.getGameState().toUpperCase() + "!\n");
-                    gameOver();
-                } else if (!pvp && aiTurn) {
-                    playAIMove();
-                    aiTurn = false;
-                }
-            }
+    /**
+     * @return the search of the AI's move on a copy of the field, which returns the action that places it.
+     */
+    private static Callable<Runnable> searchMove(int level) {
+        Field position = field.copy();
+        Mark mark = markAI;
+        return () -> {
+            int[] move = AI.getMoveByDifficulty(position, mark, level);
+            return () -> {
+                int row = move[0];
+                int col = move[1];
+                Tile ai = tiles[row * columns + col];
+                ai.setTileAndField(row, col, mark, ai);
+            };
         };
-        timer.start();
+    }
+
+    /**
+     * Places the move found by {@link #playAIMove()}. Runs on the JavaFX Application thread.
+     */
+    private static void applyAIMove(int searchId, Runnable move) {
+        if (searchId != aiSearchId) {
+            return;
+        }
+        aiSearch = null;
+        move.run();
+    }
+
+    /**
+     * Interrupts a running AI search and makes sure its move is never placed.
+     */
+    public static void cancelAIMove() {
+        aiSearchId++;
+        if (aiSearch != null) {
+            aiSearch.cancel(true);
+            aiSearch = null;
+        }
     }
 
     public void restartGame() {
-        frame.setCenter(createBoard());
-        gameOverAlertShown = false;
+        cancelAIMove();
+        if (variant != null) {
+            variant.newGame();
+            frame.setCenter(variant);
+        } else {
+            if (!resetBoard()) {
+                createBoard();
+            }
+            frame.setCenter(gameBoard);
+            GameLog.board(field);
+        }
         StatusDisplay.updateStatus();
-        // Resets AI turn tracker depending on mark. X always goes first.
-        setAITurn(markAI == X);
-        field.print();
-        runGameLoop();
+        Analysis.update();
+        // X always goes first, so the AI starts right away if it plays X.
+        if (isAITurn()) {
+            playAIMove();
+        }
     }
 
     /**
      * Handles the display of the alert which informs about the outcome of the game.
-     * Flag gameOverShown is set to true right away to ensure method execution is limited
-     * to once per game.
+     * Called once per game by the game over event of the field.
+     * The alert is created for the first game over and reused afterwards.
      */
-    private void gameOver() {
-        gameOverAlertShown = true;
-        ButtonType newGame = new ButtonType("New Game");
-
-        Alert gameOverAlert = new Alert(Alert.AlertType.NONE, "", newGame);
-        gameOverAlert.setTitle("Game Over");
-        gameOverAlert.setHeaderText(null);
-        gameOverAlert.setContentText(field.getGameState() + "!");
-
-        Stage alert = (Stage) gameOverAlert.getDialogPane().getScene().getWindow();
-        alert.getIcons().add(new Image(this.getClass().getResource("/resources/img/user-icon.png").toExternalForm()));
-        gameOverAlert.setGraphic((new ImageView(this.getClass().getResource("/resources/img/iconSmall.png").toExternalForm())));
-        gameOverAlert.getDialogPane().getStylesheets().add(getClass().getResource("stylesheet.css").toExternalForm());
-        gameOverAlert.getDialogPane().getStyleClass().add("gameOverAlertBox");
-
-        gameOverAlert.setOnHidden(e -> {
-            System.out.println("--NEW GAME: PREVIOUS SETTINGS--");
-            restartGame();
-        });
-
+    private void gameOver(String state) {
+        if (gameOverAlert == null) {
+            ButtonType newGame = new ButtonType("New Game");
+
+            gameOverAlert = new Alert(Alert.AlertType.NONE, "", newGame);
+            gameOverAlert.setTitle("Game Over");
+            gameOverAlert.setHeaderText(null);
+
+            Stage alert = (Stage) gameOverAlert.getDialogPane().getScene().getWindow();
+            alert.getIcons().add(Resources.windowIcon);
+            gameOverAlert.setGraphic(new ImageView(Resources.gameOverGraphic));
+            gameOverAlert.getDialogPane().getStylesheets().add(Resources.stylesheet);
+            gameOverAlert.getDialogPane().getStyleClass().add("gameOverAlertBox");
+
+            gameOverAlert.setOnHidden(e -> {
+                GameLog.mode("New game: previous settings");
+                restartGame();
+            });
+        }
+        gameOverAlert.setContentText(state + "!");
         gameOverAlert.show();
     }
 
@@ -277,26 +557,61 @@ public class TicTacToe extends Application {
         toggleMode.getToggles().add(playerFirst);
         toggleMode.getToggles().add(aiFirst);
 
+        Menu boardMenu = new Menu("Board");
+        RadioMenuItem board3x3 = new RadioMenuItem("3x3");
+        RadioMenuItem board4x4 = new RadioMenuItem("4x4, 4 in a row");
+        RadioMenuItem board7x7 = new RadioMenuItem("7x7, 4 in a row");
+        RadioMenuItem board15x15 = new RadioMenuItem("15x15, 5 in a row");
+
+        ToggleGroup toggleBoard = new ToggleGroup();
+        toggleBoard.getToggles().add(board3x3);
+        toggleBoard.getToggles().add(board4x4);
+        toggleBoard.getToggles().add(board7x7);
+        toggleBoard.getToggles().add(board15x15);
+        RadioMenuItem ultimate = new RadioMenuItem("Ultimate");
+        toggleBoard.getToggles().add(ultimate);
+        RadioMenuItem qubic = new RadioMenuItem("Qubic, 4x4x4");
+        toggleBoard.getToggles().add(qubic);
+        board3x3.setSelected(true);
+
+        CheckMenuItem analysis = new CheckMenuItem("Analysis");
+
         modeMenu.getItems().add(pvpMode);
         modeMenu.getItems().add(pveMode);
+        modeMenu.getItems().add(new SeparatorMenuItem());
+        modeMenu.getItems().add(boardMenu);
+        modeMenu.getItems().add(analysis);
         pveMode.getItems().add(playerFirst);
         pveMode.getItems().add(aiFirst);
+        boardMenu.getItems().add(board3x3);
+        boardMenu.getItems().add(board4x4);
+        boardMenu.getItems().add(board7x7);
+        boardMenu.getItems().add(board15x15);
+        boardMenu.getItems().add(new SeparatorMenuItem());
+        boardMenu.getItems().add(ultimate);
+        boardMenu.getItems().add(qubic);
 
         // Difficulty Menu
         Menu difficultyMenu = new Menu("Difficulty");
         RadioMenuItem easyDifficulty = new RadioMenuItem("Easy");
         RadioMenuItem mediumDifficulty = new RadioMenuItem("Medium");
         RadioMenuItem hardDifficulty = new RadioMenuItem("Hard");
+        RadioMenuItem monteCarloDifficulty = new RadioMenuItem("Monte Carlo");
+        RadioMenuItem casualDifficulty = new RadioMenuItem("Casual");
 
         ToggleGroup toggleDifficulty = new ToggleGroup();
         toggleDifficulty.getToggles().add(easyDifficulty);
         toggleDifficulty.getToggles().add(mediumDifficulty);
         toggleDifficulty.getToggles().add(hardDifficulty);
+        toggleDifficulty.getToggles().add(monteCarloDifficulty);
+        toggleDifficulty.getToggles().add(casualDifficulty);
         hardDifficulty.setSelected(true);
 
         difficultyMenu.getItems().add(easyDifficulty);
         difficultyMenu.getItems().add(mediumDifficulty);
         difficultyMenu.getItems().add(hardDifficulty);
+        difficultyMenu.getItems().add(monteCarloDifficulty);
+        difficultyMenu.getItems().add(casualDifficulty);
 
         // Menu Bar
         menuBar.getMenus().add(modeMenu);
@@ -306,27 +621,36 @@ public class TicTacToe extends Application {
         pvpMode.setOnAction(e -> {
             setGameMode("pvp");
             difficultyMenu.setDisable(true);
-            System.out.println("\n--NEW GAME: PvP--");
+            GameLog.mode("New game: PvP");
             restartGame();
         });
         pveMode.setOnAction(e -> {
             setGameMode("pve");
             difficultyMenu.setDisable(false);
-            System.out.println("\n--NEW GAME: PvE--");
+            GameLog.mode("New game: PvE");
             restartGame();
         });
         aiFirst.setOnAction(e -> {
+            cancelAIMove();
             markAI = X;
-            aiTurn = true;
         });
         playerFirst.setOnAction(e -> {
+            cancelAIMove();
             markAI = O;
-            aiTurn = false;
         });
+        board3x3.setOnAction(e -> setBoard(3, 3, 3));
+        board4x4.setOnAction(e -> setBoard(4, 4, 4));
+        board7x7.setOnAction(e -> setBoard(7, 7, 4));
+        board15x15.setOnAction(e -> setBoard(15, 15, 5));
+        ultimate.setOnAction(e -> setVariant(new UltimateView()));
+        qubic.setOnAction(e -> setVariant(new QubicView()));
+        analysis.setOnAction(e -> Analysis.setEnabled(analysis.isSelected()));
         difficultyMenu.setOnAction(e -> restartGame());
         easyDifficulty.setOnAction(e -> setDifficulty(1));
         mediumDifficulty.setOnAction(e -> setDifficulty(2));
         hardDifficulty.setOnAction(e -> setDifficulty(3));
+        monteCarloDifficulty.setOnAction(e -> setDifficulty(4));
+        casualDifficulty.setOnAction(e -> setDifficulty(5));
 
         return menuBar;
     }
@@ -339,8 +663,7 @@ public class TicTacToe extends Application {
         restartButton.setLayoutY(5.5);
 
         restartButton.setOnAction(e -> {
-            if (markAI == X) { setAITurn(true); }
-            System.out.println("\n--RESTART--\n");
+            GameLog.mode("Restart");
             restartGame();
         });
 
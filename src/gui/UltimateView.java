@@ -0,0 +1,141 @@
+package gui;
+
+import game.Mark;
+import game.UltimateBoard;
+import game.UltimateSearch;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.StackPane;
+import log.GameLog;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static game.Mark.*;
+
+/**
+ * Ultimate Tic-Tac-Toe, see {@link UltimateBoard}. The 9 boards are grids of tiles inside the grid of
+ * the macro board. The boards that may be played next are highlighted, a won board shows the mark of
+ * its winner on top.
+ */
+final class UltimateView extends VariantBoard {
+
+    private static final int TILE_SIZE = 60;
+    private static final int BOARD_GAP = 10;
+
+    /**
+     * Time the AI searches per move, short enough to stay interactive.
+     */
+    private static final long SEARCH_MILLIS = 300;
+
+    private final Button[] tiles = new Button[UltimateBoard.CELLS];
+    private final GridPane[] boards = new GridPane[9];
+    private final Label[] winners = new Label[9];
+    private UltimateBoard board = new UltimateBoard();
+
+    UltimateView() {
+        setHgap(BOARD_GAP);
+        setVgap(BOARD_GAP);
+        for (int b = 0; b < 9; b++) {
+            GridPane grid = new GridPane();
+            grid.getStyleClass().add("ultimateBoard");
+            for (int square = 0; square < 9; square++) {
+                int cell = b * 9 + square;
+                Button tile = new Button();
+                tile.setMinSize(TILE_SIZE, TILE_SIZE);
+                tile.setMaxSize(TILE_SIZE, TILE_SIZE);
+                tile.getStyleClass().add("tile");
+                // Same scaling as the tiles of the larger boards.
+                tile.setStyle("-fx-font-size: " + (TILE_SIZE * 3 / 4) + ";");
+                tile.setOnMouseClicked(e -> {
+                    // Wait for the AI to finish its move.
+                    if (TicTacToe.isAITurn() || !board.isLegal(cell)) {
+                        return;
+                    }
+                    Resources.turnSound.play();
+                    play(cell);
+                });
+                GridPane.setConstraints(tile, square % 3, square / 3);
+                grid.getChildren().add(tile);
+                tiles[cell] = tile;
+            }
+            Label winner = new Label();
+            winner.getStyleClass().add("ultimateWinner");
+            // Clicks go through to the tiles, which ignore them since the board is closed.
+            winner.setMouseTransparent(true);
+            boards[b] = grid;
+            winners[b] = winner;
+            StackPane stack = new StackPane(grid, winner);
+            GridPane.setConstraints(stack, b % 3, b / 3);
+            getChildren().add(stack);
+        }
+        refresh();
+    }
+
+    @Override
+    String getName() {
+        return "Ultimate Tic-Tac-Toe";
+    }
+
+    @Override
+    void newGame() {
+        board = new UltimateBoard();
+        refresh();
+    }
+
+    @Override
+    boolean isGameOver() {
+        return board.isGameOver();
+    }
+
+    @Override
+    Mark getWinner() {
+        return board.getWinner();
+    }
+
+    @Override
+    boolean isXsTurn() {
+        return board.isXsTurn();
+    }
+
+    @Override
+    Callable<Runnable> searchMove(int difficulty) {
+        UltimateBoard position = board.copy();
+        return () -> {
+            int cell = UltimateSearch.move(position, difficulty, SEARCH_MILLIS, ThreadLocalRandom.current());
+            return () -> play(cell);
+        };
+    }
+
+    /**
+     * Places the mark of the side to move, the move has to be legal.
+     */
+    private void play(int cell) {
+        Mark mark = board.isXsTurn() ? X : O;
+        board.play(cell);
+        GameLog.move(mark, UltimateBoard.row(cell), UltimateBoard.column(cell));
+        refresh();
+        TicTacToe.variantMoved();
+    }
+
+    /**
+     * Shows the marks, the won boards and the boards of the next move.
+     */
+    private void refresh() {
+        for (int cell = 0; cell < UltimateBoard.CELLS; cell++) {
+            tiles[cell].setText("" + board.getMark(cell));
+        }
+        int forced = board.getForcedBoard();
+        for (int b = 0; b < 9; b++) {
+            Mark winner = board.getBoardWinner(b);
+            winners[b].setText(winner == BLANK ? "" : winner.toString());
+            winners[b].setVisible(winner != BLANK);
+            boolean playable = !board.isGameOver() && !board.isClosed(b) && (forced < 0 || forced == b);
+            boards[b].getStyleClass().remove("activeBoard");
+            if (playable) {
+                boards[b].getStyleClass().add("activeBoard");
+            }
+        }
+    }
+}
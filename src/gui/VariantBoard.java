@@ -0,0 +1,49 @@
+package gui;
+
+import game.Mark;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.layout.GridPane;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Board of a game variant that isn't played on a {@link game.Field}, shown instead of the tiles of
+ * {@link TicTacToe}. The window keeps the mode, the difficulty, the status, the AI thread and the game
+ * over alert, the variant only knows its own rules and layout. After every move it calls
+ * {@link TicTacToe#variantMoved()}, like the events of the field in the classic game.
+ */
+abstract class VariantBoard extends GridPane {
+
+    VariantBoard() {
+        setAlignment(Pos.CENTER);
+        setPadding(new Insets(10, 0, 0, 0));
+    }
+
+    /**
+     * @return name of the variant for the log.
+     */
+    abstract String getName();
+
+    /**
+     * Clears the board for a new game.
+     */
+    abstract void newGame();
+
+    abstract boolean isGameOver();
+
+    /**
+     * @return the winner, {@link Mark#BLANK} for a draw or a game that isn't over.
+     */
+    abstract Mark getWinner();
+
+    abstract boolean isXsTurn();
+
+    /**
+     * Prepares the search of the AI's move on a copy of the position. Called on the JavaFX Application thread.
+     * @param difficulty 1 (Easy) to 5 (Casual).
+     * @return the search, run on the AI thread. It returns the action that plays the move, which is run on
+     * the Application thread.
+     */
+    abstract Callable<Runnable> searchMove(int difficulty);
+}
@@ -0,0 +1,24 @@
+package log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * Writes the log to {@link System#out}, buffered and flushed once per batch.
+ */
+public class ConsoleSink implements LogSink {
+
+    private final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out));
+
+    @Override
+    public void write(String line) throws IOException {
+        out.write(line);
+        out.newLine();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
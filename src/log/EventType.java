@@ -0,0 +1,38 @@
+package log;
+
+/**
+ * Kind of a logged game event. Decides how the values of the event are formatted.
+ */
+public enum EventType {
+
+    /**
+     * A mark was placed. Text: the mark, values: row and column.
+     */
+    MOVE,
+
+    /**
+     * A game has ended. Text: the outcome.
+     */
+    RESULT,
+
+    /**
+     * Game mode, difficulty or board changed or a new game started. Text: description.
+     */
+    MODE,
+
+    /**
+     * The AI made a move. Values: difficulty and search time in microseconds.
+     */
+    AI_MOVE,
+
+    /**
+     * The whole board, rendered as text.
+     */
+    BOARD,
+
+    /**
+     * Any other message.
+     */
+    MESSAGE
+
+}
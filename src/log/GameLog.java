@@ -0,0 +1,253 @@
+package log;
+
+import game.Field;
+import game.Mark;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured, asynchronous game event log.
+ * Events are put into a {@link RingBuffer} and written to the {@link LogSink}s by a background
+ * thread, so the game never waits for console or file I/O.
+ *
+ * Configured with system properties:
+ * {@code tictactoe.log.level} (DEBUG, INFO, WARN, ERROR or OFF, default INFO),
+ * {@code tictactoe.log.console} (false to disable the console) and
+ * {@code tictactoe.log.file} (path of a rolling log file, disabled by default).
+ */
+public abstract class GameLog {
+
+    private static final int BUFFER_SIZE = 4096;
+    /**
+     * Longest sleep of the idle writer. Producers wake it up, this is only a safety net.
+     */
+    private static final long IDLE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long FILE_SIZE = 10 * 1024 * 1024;
+    private static final int FILE_COUNT = 5;
+
+    private static final RingBuffer buffer = new RingBuffer(BUFFER_SIZE);
+    private static final List<LogSink> sinks = new CopyOnWriteArrayList<>();
+    private static volatile Level level;
+    private static final Thread writer;
+
+    /**
+     * True while the writer found the buffer empty and is about to park or parked.
+     */
+    private static volatile boolean writerIdle;
+
+    static {
+        String levelName = System.getProperty("tictactoe.log.level", "INFO");
+        try {
+            level = Level.valueOf(levelName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            level = Level.INFO;
+            System.err.println("Unknown log level " + levelName + ", using INFO.");
+        }
+        if (!"false".equals(System.getProperty("tictactoe.log.console"))) {
+            sinks.add(new ConsoleSink());
+        }
+        String file = System.getProperty("tictactoe.log.file");
+        if (file != null) {
+            try {
+                sinks.add(new RollingFileSink(Paths.get(file), FILE_SIZE, FILE_COUNT));
+            } catch (IOException e) {
+                System.err.println("Could not open log file " + file + ": " + e.getMessage());
+            }
+        }
+
+        writer = new Thread(GameLog::drainLoop, "GameLog writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(GameLog::close, "GameLog shutdown"));
+    }
+
+    public static void setLevel(Level level) {
+        GameLog.level = level;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return true if events of the given level are written. Use this to skip building expensive messages.
+     */
+    public static boolean isEnabled(Level eventLevel) {
+        return level != Level.OFF && eventLevel.compareTo(level) >= 0;
+    }
+
+    public static void addSink(LogSink sink) {
+        sinks.add(sink);
+    }
+
+    public static void removeSink(LogSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Logs a plain message.
+     */
+    public static void log(Level eventLevel, String message) {
+        if (isEnabled(eventLevel)) {
+            offer(eventLevel, EventType.MESSAGE, message, 0, 0);
+        }
+    }
+
+    /**
+     * A mark was placed on the board (INFO).
+     */
+    public static void move(Mark mark, int row, int column) {
+        if (isEnabled(Level.INFO)) {
+            offer(Level.INFO, EventType.MOVE, mark.toString(), row, column);
+        }
+    }
+
+    /**
+     * A game has ended (INFO).
+     * @param outcome e.g. the game state of the field.
+     */
+    public static void result(String outcome) {
+        if (isEnabled(Level.INFO)) {
+            offer(Level.INFO, EventType.RESULT, outcome, 0, 0);
+        }
+    }
+
+    /**
+     * Mode, difficulty or board changed, or a new game started (INFO).
+     */
+    public static void mode(String description) {
+        if (isEnabled(Level.INFO)) {
+            offer(Level.INFO, EventType.MODE, description, 0, 0);
+        }
+    }
+
+    /**
+     * The AI made a move (INFO).
+     * @param difficulty difficulty of the move.
+     * @param nanos time the search took.
+     */
+    public static void aiMove(int difficulty, long nanos) {
+        if (isEnabled(Level.INFO)) {
+            offer(Level.INFO, EventType.AI_MOVE, null, difficulty, nanos / 1000);
+        }
+    }
+
+    /**
+     * The current board as text (DEBUG). The board is rendered right away because it keeps changing,
+     * only the output happens in the background.
+     */
+    public static void board(Field field) {
+        if (isEnabled(Level.DEBUG)) {
+            offer(Level.DEBUG, EventType.BOARD, field.toString(), 0, 0);
+        }
+    }
+
+    /**
+     * @return number of events that were dropped because the writer could not keep up.
+     */
+    public static long getDropped() {
+        return buffer.getDropped();
+    }
+
+    /**
+     * Puts an event into the buffer and wakes up the writer if it is idle.
+     */
+    private static void offer(Level eventLevel, EventType type, String text, long first, long second) {
+        if (buffer.offer(eventLevel, type, text, first, second) && writerIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private static void drainLoop() {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        StringBuilder line = new StringBuilder(128);
+        while (true) {
+            if (drain(timeFormat, line)) {
+                continue;
+            }
+            writerIdle = true;
+            // Drained once more after announcing the idle state. The producer publishes its slot with a
+            // volatile store and then reads writerIdle, the writer stores writerIdle and then reads the slot,
+            // so at least one of them sees the other: the event is written here or the writer is unparked.
+            if (!drain(timeFormat, line)) {
+                LockSupport.parkNanos(IDLE_WAIT_NANOS);
+            }
+            writerIdle = false;
+        }
+    }
+
+    /**
+     * Writes all events that are currently in the buffer.
+     * @return false if there was nothing to write.
+     */
+    private static synchronized boolean drain(SimpleDateFormat timeFormat, StringBuilder line) {
+        RingBuffer.Slot slot = buffer.peek();
+        if (slot == null) {
+            return false;
+        }
+        while (slot != null) {
+            line.setLength(0);
+            format(slot, timeFormat, line);
+            buffer.release();
+            String text = line.toString();
+            for (LogSink sink : sinks) {
+                try {
+                    sink.write(text);
+                } catch (IOException e) {
+                    System.err.println("Log sink failed: " + e.getMessage());
+                }
+            }
+            slot = buffer.peek();
+        }
+        for (LogSink sink : sinks) {
+            try {
+                sink.flush();
+            } catch (IOException e) {
+                System.err.println("Log sink failed: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private static void format(RingBuffer.Slot slot, SimpleDateFormat timeFormat, StringBuilder line) {
+        line.append(timeFormat.format(new Date(slot.time))).append(' ');
+        line.append(String.format("%-5s", slot.level)).append(' ').append(slot.type);
+        switch (slot.type) {
+            case MOVE:
+                line.append(" mark=").append(slot.text).append(" row=").append(slot.first)
+                        .append(" column=").append(slot.second);
+                break;
+            case AI_MOVE:
+                line.append(" difficulty=").append(slot.first).append(" micros=").append(slot.second);
+                break;
+            case BOARD:
+                // Field#toString() ends with a line break, the sinks add their own.
+                line.append(System.lineSeparator()).append(slot.text.stripTrailing());
+                break;
+            default:
+                line.append(' ').append(slot.text);
+                break;
+        }
+    }
+
+    /**
+     * Writes the remaining events and closes the sinks. Called by a shutdown hook.
+     */
+    public static void close() {
+        drain(new SimpleDateFormat("HH:mm:ss.SSS"), new StringBuilder());
+        for (LogSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                System.err.println("Log sink failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package log;
+
+/**
+ * Log levels, from the most to the least detailed. {@link #OFF} disables all output.
+ */
+public enum Level {
+
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+
+}
@@ -0,0 +1,24 @@
+package log;
+
+import java.io.IOException;
+
+/**
+ * Destination of the formatted log lines. Only called from the writer thread of {@link GameLog},
+ * so implementations don't have to be thread-safe.
+ */
+public interface LogSink {
+
+    /**
+     * @param line formatted event without line separator.
+     */
+    void write(String line) throws IOException;
+
+    /**
+     * Called after a batch of lines was written.
+     */
+    void flush() throws IOException;
+
+    default void close() throws IOException {
+        flush();
+    }
+}
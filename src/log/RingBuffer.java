@@ -0,0 +1,105 @@
+package log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free multi-producer single-consumer queue of log events.
+ * The slots are allocated once and reused. Producers claim a sequence number with a CAS, fill
+ * the slot and publish it. If the buffer is full the event is dropped instead of waiting, so
+ * logging never blocks the game.
+ */
+final class RingBuffer {
+
+    /**
+     * One preallocated event. Written by exactly one producer between claim and publish,
+     * read by the consumer after publish.
+     */
+    static final class Slot {
+        Level level;
+        EventType type;
+        long time;
+        String text;
+        long first;
+        long second;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+
+    /**
+     * {@code published[i] == sequence + 1} once the event with that sequence is readable in slot i.
+     */
+    private final AtomicLongArray published;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two.
+     */
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+        published = new AtomicLongArray(size);
+    }
+
+    /**
+     * Adds an event. Can be called from any thread.
+     * @return false if the buffer was full and the event was dropped.
+     */
+    boolean offer(Level level, EventType type, String text, long first, long second) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail.get() >= slots.length) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        Slot slot = slots[index];
+        slot.level = level;
+        slot.type = type;
+        slot.time = System.currentTimeMillis();
+        slot.text = text;
+        slot.first = first;
+        slot.second = second;
+        // A volatile store, not lazySet: it must not be reordered with the producer's following read of
+        // GameLog's idle flag, or the producer and the parking writer could both miss each other.
+        published.set(index, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Returns the next event. Only called by the single consumer, which has to call
+     * {@link #release()} after it is done with the slot.
+     * @return the slot of the next event, null if there is none.
+     */
+    Slot peek() {
+        long sequence = tail.get();
+        int index = (int) sequence & mask;
+        return published.get(index) == sequence + 1 ? slots[index] : null;
+    }
+
+    /**
+     * Frees the slot returned by {@link #peek()} for the producers.
+     */
+    void release() {
+        Slot slot = slots[(int) tail.get() & mask];
+        slot.text = null;
+        tail.lazySet(tail.get() + 1);
+    }
+
+    /**
+     * @return number of events dropped because the buffer was full.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,81 @@
+package log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the log to a file. When the file reaches its maximum size it is renamed to
+ * {@code name.1} (older files move to {@code name.2} and so on) and a new file is started.
+ * At most {@code maxFiles} old files are kept.
+ */
+public class RollingFileSink implements LogSink {
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private BufferedWriter out;
+    private long bytes;
+
+    /**
+     * @param file path of the current log file.
+     * @param maxBytes size at which the file is rolled over.
+     * @param maxFiles number of old files that are kept.
+     */
+    public RollingFileSink(Path file, long maxBytes, int maxFiles) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        bytes = Files.size(file);
+    }
+
+    @Override
+    public void write(String line) throws IOException {
+        if (bytes >= maxBytes) {
+            roll();
+        }
+        out.write(line);
+        out.newLine();
+        // Close enough for deciding when to roll, the log is mostly ASCII.
+        bytes += line.length() + 1;
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = file.resolveSibling(file.getFileName() + "." + i);
+            if (Files.exists(older)) {
+                Files.move(older, file.resolveSibling(file.getFileName() + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 0) {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        open();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
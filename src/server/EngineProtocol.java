@@ -0,0 +1,324 @@
+package server;
+
+import game.AI;
+import game.Field;
+import game.Mark;
+import game.MonteCarloEngine;
+import game.MovePolicy;
+import game.MoveScores;
+import game.Position;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static game.Mark.*;
+
+/**
+ * Headless engine that is driven over stdin/stdout with a UCI-like protocol, e.g. by a tournament
+ * harness. It keeps one position, every {@code go} searches it and answers with the best move.
+ * Moves are written like on a go board: the column as a letter, then the row from 1, so {@code b3}
+ * is the second column of the third row.
+ * <pre>
+ * uci                                       id name tictactoe, the options, then uciok
+ * isready                                   readyok, once all earlier commands are answered
+ * setoption name difficulty value n         1 (Easy) to 5 (Casual), default 3
+ * ucinewgame                                empty board of the current size
+ * position startpos [moves m1 m2 ...]       current size, X moves first
+ * position rows columns winLength [moves m1 m2 ...]
+ *                                           at most {@value Session#MAX_SIZE} rows and 26 columns, X moves first
+ * go [movetime ms] [nodes n]                budget of the search, default 100 ms on boards larger than 3x3
+ *     info score mate n | score cp n time ms     mate n: wins in n plies (negative: loses), cp: evaluation
+ *     info time ms                               for Easy, which picks at random without scores
+ *     info nodes playouts winrate w time ms      for Monte Carlo
+ *     bestmove b3 | bestmove none                none if the game is over
+ * board                                     the board, then end
+ * quit
+ * error message                             for any invalid command
+ * </pre>
+ * Commands are handled one after the other. Output is buffered and only flushed when no more input is
+ * waiting, so a harness can pipeline a batch of commands and read all answers at once.
+ *
+ * "Hard" searches every move here instead of using the perfect-play table, so its score can be reported.
+ * The log goes to stderr, stdout only carries the protocol.
+ */
+public final class EngineProtocol {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final long DEFAULT_MILLIS = 100;
+
+    private final BufferedReader in;
+    private final BufferedWriter out;
+    private final Random random = new Random();
+
+    private Field field = new Field();
+
+    /**
+     * Board on which {@code position} sets up the next position, swapped with {@link #field} once all
+     * moves turned out legal.
+     */
+    private Field spare = new Field();
+    private int difficulty = 3;
+    private long searchMillis = DEFAULT_MILLIS;
+    private long searchNodes = 0;
+    private MonteCarloEngine monteCarlo;
+    private long monteCarloMillis;
+    private long monteCarloNodes;
+
+    EngineProtocol(BufferedReader in, BufferedWriter out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out),
+                StandardCharsets.US_ASCII), BUFFER_SIZE);
+        // Before anything is logged: the console log must not end up between the answers.
+        System.setOut(System.err);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII),
+                BUFFER_SIZE);
+        new EngineProtocol(in, out).run();
+    }
+
+    /**
+     * Handles commands until {@code quit} or the end of the input.
+     */
+    void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = WHITESPACE.split(line.trim());
+            try {
+                switch (words[0].toLowerCase()) {
+                    case "":
+                        break;
+                    case "uci":
+                        send("id name tictactoe");
+                        send("option name difficulty type spin default 3 min 1 max 5");
+                        send("uciok");
+                        break;
+                    case "isready":
+                        send("readyok");
+                        break;
+                    case "setoption":
+                        setOption(words);
+                        break;
+                    case "ucinewgame":
+                        field.clear();
+                        break;
+                    case "position":
+                        position(words);
+                        break;
+                    case "go":
+                        go(words);
+                        break;
+                    case "board":
+                        out.write(field.toString());
+                        send("end");
+                        break;
+                    case "quit":
+                        out.flush();
+                        return;
+                    default:
+                        send("error Unknown command: " + words[0]);
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                send("error " + e.getMessage());
+            }
+            if (!in.ready()) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * {@code setoption name difficulty value n}
+     */
+    private void setOption(String[] words) {
+        if (words.length != 5 || !words[1].equalsIgnoreCase("name") || !words[3].equalsIgnoreCase("value")) {
+            throw new IllegalArgumentException("Usage: setoption name difficulty value n");
+        }
+        if (!words[2].equalsIgnoreCase("difficulty")) {
+            throw new IllegalArgumentException("Unknown option: " + words[2]);
+        }
+        int level = number(words[4]);
+        if (level < 1 || level > 5) {
+            throw new IllegalArgumentException("Difficulty has to be from 1 to 5.");
+        }
+        difficulty = level;
+    }
+
+    /**
+     * {@code position startpos | rows columns winLength [moves m1 m2 ...]}
+     */
+    private void position(String[] words) {
+        Field board;
+        int next;
+        if (words.length > 1 && words[1].equalsIgnoreCase("startpos")) {
+            board = newBoard(field.getRows(), field.getColumns(), field.getWinLength());
+            next = 2;
+        } else if (words.length > 3) {
+            board = newBoard(number(words[1]), number(words[2]), number(words[3]));
+            next = 4;
+        } else {
+            throw new IllegalArgumentException("Usage: position startpos | rows columns winLength [moves ...]");
+        }
+        if (next < words.length) {
+            if (!words[next].equalsIgnoreCase("moves")) {
+                throw new IllegalArgumentException("Expected moves instead of " + words[next]);
+            }
+            for (int i = next + 1; i < words.length; i++) {
+                if (board.isGameOver()) {
+                    throw new IllegalArgumentException("The game is over before " + words[i]);
+                }
+                int cell = parseMove(board, words[i]);
+                if (board.getMark(cell) != BLANK) {
+                    throw new IllegalArgumentException("Cell " + words[i] + " is occupied.");
+                }
+                board.setMark(cell, board.isXsTurn() ? X : O);
+            }
+        }
+        // Only a complete position replaces the current one.
+        spare = field;
+        field = board;
+    }
+
+    /**
+     * Clears the spare board for a new position. It is reused if the size didn't change, so a stream of
+     * positions doesn't allocate boards.
+     */
+    private Field newBoard(int rows, int columns, int winLength) {
+        if (columns > 26) {
+            throw new IllegalArgumentException("At most 26 columns, one letter each.");
+        }
+        if (rows > Session.MAX_SIZE) {
+            throw new IllegalArgumentException("At most " + Session.MAX_SIZE + " rows.");
+        }
+        if (rows == spare.getRows() && columns == spare.getColumns() && winLength == spare.getWinLength()) {
+            spare.clear();
+        } else {
+            spare = new Field(rows, columns, winLength);
+        }
+        return spare;
+    }
+
+    /**
+     * {@code go [movetime ms] [nodes n]}
+     */
+    private void go(String[] words) throws IOException {
+        long millis = 0;
+        long nodes = 0;
+        for (int i = 1; i < words.length; i += 2) {
+            if (i + 1 == words.length) {
+                throw new IllegalArgumentException("Missing value of " + words[i]);
+            }
+            switch (words[i].toLowerCase()) {
+                case "movetime":
+                    millis = number(words[i + 1]);
+                    break;
+                case "nodes":
+                    nodes = number(words[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown go option: " + words[i]);
+            }
+        }
+        if (millis <= 0 && nodes <= 0) {
+            millis = DEFAULT_MILLIS;
+        }
+        if (field.isGameOver()) {
+            send("bestmove none");
+            return;
+        }
+        long start = System.nanoTime();
+        int cell;
+        if (difficulty == 4) {
+            MonteCarloEngine.Result result = monteCarlo(millis, nodes).search(Position.of(field));
+            cell = result.getRow() * field.getColumns() + result.getColumn();
+            send("info nodes " + result.getPlayouts() + " winrate "
+                    + String.format(Locale.ROOT, "%.3f", result.getWinRate()) + " time " + elapsedMillis(start));
+        } else {
+            if (millis != searchMillis || nodes != searchNodes) {
+                AI.setSearchBudget(millis, nodes);
+                searchMillis = millis;
+                searchNodes = nodes;
+            }
+            MovePolicy policy = AI.getPolicy(difficulty);
+            if (policy.requires() == MovePolicy.Scores.NONE) {
+                // Easy picks at random, a search would only use up the budget.
+                cell = policy.select(MoveScores.unscored(field), random);
+                send("info time " + elapsedMillis(start));
+            } else {
+                // The search places and removes marks, so it gets its own copy.
+                MoveScores scores = AI.scoreMoves(field.copy(), turn(), policy.requires() == MovePolicy.Scores.EXACT);
+                cell = policy.select(scores, random);
+                int outcome = scores.getOutcome(cell);
+                send("info score " + (outcome != 0 ? "mate " + outcome : "cp " + scores.getScore(cell))
+                        + " time " + elapsedMillis(start));
+            }
+        }
+        send("bestmove " + formatMove(cell));
+    }
+
+    /**
+     * @return the Monte Carlo engine for the budget, only created again when the budget changes.
+     */
+    private MonteCarloEngine monteCarlo(long millis, long nodes) {
+        if (monteCarlo == null || millis != monteCarloMillis || nodes != monteCarloNodes) {
+            monteCarlo = nodes <= 0 ? MonteCarloEngine.withTimeBudget(millis)
+                    : millis <= 0 ? MonteCarloEngine.withPlayouts(nodes)
+                    : new MonteCarloEngine(nodes, millis, Runtime.getRuntime().availableProcessors());
+            monteCarloMillis = millis;
+            monteCarloNodes = nodes;
+        }
+        return monteCarlo;
+    }
+
+    /**
+     * @param move column letter and row from 1, e.g. {@code b3}.
+     * @return cell index of the move.
+     */
+    private static int parseMove(Field board, String move) {
+        int column = Character.toLowerCase(move.charAt(0)) - 'a';
+        int row = move.length() > 1 ? number(move.substring(1)) - 1 : -1;
+        if (column < 0 || column >= board.getColumns() || row < 0 || row >= board.getRows()) {
+            throw new IllegalArgumentException("Not a move on this board: " + move);
+        }
+        return row * board.getColumns() + column;
+    }
+
+    private String formatMove(int cell) {
+        return (char) ('a' + cell % field.getColumns()) + Integer.toString(cell / field.getColumns() + 1);
+    }
+
+    private Mark turn() {
+        return field.isXsTurn() ? X : O;
+    }
+
+    private void send(String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static int number(String word) {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + word);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package server;
+
+import game.Engine;
+import game.MonteCarloEngine;
+import game.SearchStats;
+import game.SearchEngine;
+import log.GameLog;
+import log.Level;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless server that hosts independent games over TCP on localhost, without the GUI.
+ * Every connection is a {@link Session} with its own field, running on its own virtual thread
+ * (see {@link VirtualThreads}), so thousands of players can be served by one JVM. All sessions share
+ * one {@link Engine} per difficulty.
+ *
+ * The protocol is line based, rows and columns are 1-based:
+ * <pre>
+ * server: HELLO tictactoe 1
+ * client: NEW [rows columns winLength [aiMark [difficulty]]]   aiMark X, O or - for no AI, default 3 3 3 O 3
+ *                                difficulty 1 Easy, 2 Medium, 3 Hard, 4 Monte Carlo, 5 Casual
+ * server: OK
+ * client: MOVE row column
+ * server: AI row column          if the AI moved
+ * server: TURN X | TURN O        the game goes on
+ *         OVER X | OVER O | OVER DRAW
+ * client: BOARD                  server: the board, then END
+ * client: QUIT                   server: BYE
+ * server: ERROR message          for any invalid command
+ * </pre>
+ * After NEW the server also answers with AI/TURN/OVER, as the AI may move first. Boards have at most
+ * {@value Session#MAX_SIZE} rows and columns.
+ *
+ * Usage: {@code GameServer [port]}, default port {@value #DEFAULT_PORT}.
+ */
+public final class GameServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 4000;
+    private static final int BACKLOG = 4096;
+    private static final long MONTE_CARLO_MILLIS = 100;
+    private static final long REPORT_INTERVAL_MILLIS = 10_000;
+
+    private final Engine[] engines = {new SearchEngine(1), new SearchEngine(2), new SearchEngine(3),
+            MonteCarloEngine.withTimeBudget(MONTE_CARLO_MILLIS), new SearchEngine(5)};
+    private final ServerSocket socket;
+    private final ExecutorService sessions = VirtualThreads.newPerTaskExecutor("Session");
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder games = new LongAdder();
+
+    /**
+     * Binds the server to the loopback address.
+     * @param port TCP port, 0 for any free port.
+     */
+    public GameServer(int port) throws IOException {
+        socket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        SearchStats.register();
+        try (GameServer server = new GameServer(port)) {
+            GameLog.mode("Server listening on port " + server.getPort()
+                    + (VirtualThreads.isAvailable() ? " (virtual threads)" : " (platform threads)"));
+            server.startReports();
+            server.serve();
+        }
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void serve() {
+        while (!socket.isClosed()) {
+            try {
+                Socket connection = socket.accept();
+                sessions.execute(() -> handle(connection));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    GameLog.log(Level.WARN, "Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket connection) {
+        openSessions.incrementAndGet();
+        try (Socket client = connection) {
+            client.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII));
+            new Session(in, out, this).run();
+        } catch (IOException e) {
+            GameLog.log(Level.DEBUG, "Session closed: " + e.getMessage());
+        } finally {
+            openSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Logs the number of sessions and the moves per second regularly.
+     */
+    private void startReports() {
+        Thread reporter = new Thread(() -> {
+            long lastMoves = 0;
+            while (!socket.isClosed()) {
+                try {
+                    Thread.sleep(REPORT_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long total = moves.sum();
+                if (total != lastMoves) {
+                    GameLog.log(Level.INFO, "sessions=" + openSessions.get() + " games=" + games.sum() + " moves/s="
+                            + (total - lastMoves) * 1000 / REPORT_INTERVAL_MILLIS);
+                }
+                lastMoves = total;
+            }
+        }, "Server report");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /**
+     * @param difficulty 1 (Easy), 2 (Medium), 3 (Hard), 4 (Monte Carlo, 100 ms per move) or 5 (Casual).
+     */
+    Engine getEngine(int difficulty) {
+        return engines[difficulty - 1];
+    }
+
+    void movePlayed() {
+        moves.increment();
+    }
+
+    void gamePlayed() {
+        games.increment();
+    }
+
+    public int getOpenSessions() {
+        return openSessions.get();
+    }
+
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        sessions.shutdownNow();
+    }
+}
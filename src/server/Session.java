@@ -0,0 +1,173 @@
+package server;
+
+import game.Field;
+import game.Mark;
+import game.Position;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+import static game.Mark.*;
+
+/**
+ * One client connection of the {@link GameServer}. Every session has its own {@link Field} and
+ * settings, only the engines of the server are shared. The commands are described in {@link GameServer}.
+ */
+final class Session {
+
+    /**
+     * Largest number of rows and columns of a board. The tables of a board shape grow with the square of
+     * its cells and stay cached for the lifetime of the server, so clients can't ask for any size.
+     */
+    static final int MAX_SIZE = 32;
+
+    private final BufferedReader in;
+    private final BufferedWriter out;
+    private final GameServer server;
+
+    private Field field;
+    private Mark markAI = BLANK;
+    private int difficulty = 3;
+
+    Session(BufferedReader in, BufferedWriter out, GameServer server) {
+        this.in = in;
+        this.out = out;
+        this.server = server;
+    }
+
+    /**
+     * Handles commands until the client quits or disconnects.
+     */
+    void run() throws IOException {
+        send("HELLO tictactoe 1");
+        out.flush();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            try {
+                switch (words[0].toUpperCase()) {
+                    case "NEW":
+                        newGame(words);
+                        break;
+                    case "MOVE":
+                        move(words);
+                        break;
+                    case "BOARD":
+                        board();
+                        break;
+                    case "QUIT":
+                        send("BYE");
+                        out.flush();
+                        return;
+                    default:
+                        send("ERROR Unknown command: " + words[0]);
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                send("ERROR " + e.getMessage());
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * {@code NEW [rows columns winLength [aiMark [difficulty]]]}
+     */
+    private void newGame(String[] words) throws IOException {
+        if (words.length > 1 && words.length < 4) {
+            throw new IllegalArgumentException("Usage: NEW [rows columns winLength [aiMark [difficulty]]]");
+        }
+        int rows = words.length > 3 ? number(words[1]) : 3;
+        int columns = words.length > 3 ? number(words[2]) : 3;
+        int winLength = words.length > 3 ? number(words[3]) : 3;
+        if (rows > MAX_SIZE || columns > MAX_SIZE) {
+            throw new IllegalArgumentException("Boards can have at most " + MAX_SIZE + " rows and columns.");
+        }
+        Mark mark = O;
+        if (words.length > 4) {
+            String value = words[4].toUpperCase();
+            mark = value.equals("X") ? X : value.equals("O") ? O : value.equals("-") ? BLANK : null;
+            if (mark == null) {
+                throw new IllegalArgumentException("The AI mark has to be X, O or - (no AI).");
+            }
+        }
+        int level = words.length > 5 ? number(words[5]) : 3;
+        if (level < 1 || level > 5) {
+            throw new IllegalArgumentException("Difficulty has to be 1, 2, 3, 4 or 5 (Casual).");
+        }
+        field = new Field(rows, columns, winLength);
+        markAI = mark;
+        difficulty = level;
+        send("OK");
+        reply();
+    }
+
+    /**
+     * {@code MOVE row column}, 1-based like the console game.
+     */
+    private void move(String[] words) throws IOException {
+        if (field == null || field.isGameOver()) {
+            throw new IllegalArgumentException("No game running, start one with NEW.");
+        }
+        if (words.length != 3) {
+            throw new IllegalArgumentException("Usage: MOVE row column");
+        }
+        int row = number(words[1]) - 1;
+        int column = number(words[2]) - 1;
+        if (row < 0 || row >= field.getRows() || column < 0 || column >= field.getColumns()) {
+            throw new IllegalArgumentException("Coordinates should be from 1 to " + field.getRows() + " (row) and 1 to "
+                    + field.getColumns() + " (column).");
+        }
+        if (!field.available(row, column)) {
+            throw new IllegalArgumentException("This cell is occupied.");
+        }
+        field.setMark(row, column, field.isXsTurn() ? X : O);
+        server.movePlayed();
+        reply();
+    }
+
+    /**
+     * Lets the AI move if it is on turn and tells the client how the game goes on.
+     */
+    private void reply() throws IOException {
+        if (!field.isGameOver() && turn() == markAI) {
+            int[] move = server.getEngine(difficulty).move(Position.of(field));
+            field.setMark(move[0], move[1], markAI);
+            server.movePlayed();
+            send("AI " + (move[0] + 1) + " " + (move[1] + 1));
+        }
+        if (field.isGameOver()) {
+            Mark winner = field.getWinner();
+            send("OVER " + (winner == BLANK ? "DRAW" : winner.toString()));
+            server.gamePlayed();
+        } else {
+            send("TURN " + turn());
+        }
+    }
+
+    private void board() throws IOException {
+        if (field == null) {
+            throw new IllegalArgumentException("No game running, start one with NEW.");
+        }
+        out.write(field.toString());
+        send("END");
+    }
+
+    private Mark turn() {
+        return field.isXsTurn() ? X : O;
+    }
+
+    private void send(String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+    }
+
+    private static int number(String word) {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + word);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package tournament;
+
+/**
+ * Elo difference of two players from their results against each other, and the sequential
+ * probability ratio test (SPRT) that decides between two Elo differences with as few games as possible.
+ * Results are counted from the point of view of the first player: wins, draws and losses.
+ */
+final class Elo {
+
+    /**
+     * Quantile of the normal distribution for a two-sided 95% confidence interval.
+     */
+    static final double Z_95 = 1.959964;
+
+    private Elo() {
+    }
+
+    /**
+     * @return average points per game, a win is 1 and a draw 1/2.
+     */
+    static double score(long wins, long draws, long losses) {
+        return (wins + draws / 2.0) / (wins + draws + losses);
+    }
+
+    /**
+     * @param score average points per game.
+     * @return Elo difference at which the stronger player expects this score, infinite for 0 or 1.
+     */
+    static double fromScore(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * @return expected score of a player that is stronger by the given Elo difference.
+     */
+    static double toScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * @return variance of the points of a single game.
+     */
+    static double variance(long wins, long draws, long losses) {
+        long games = wins + draws + losses;
+        double score = score(wins, draws, losses);
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+                + losses * score * score) / games;
+    }
+
+    /**
+     * @return {lower, upper} Elo bound of the 95% confidence interval.
+     */
+    static double[] interval(long wins, long draws, long losses) {
+        long games = wins + draws + losses;
+        double score = score(wins, draws, losses);
+        double error = Z_95 * Math.sqrt(variance(wins, draws, losses) / games);
+        return new double[] {fromScore(Math.max(0, score - error)), fromScore(Math.min(1, score + error))};
+    }
+
+    /**
+     * Log-likelihood ratio of the hypotheses "the first player is stronger by elo1" against "by elo0",
+     * with the normal approximation of the results that is commonly used for engine tests.
+     * One win and one loss are added to the results: without them a run of draws would have no variance
+     * and never count as evidence, although it clearly speaks for equal players.
+     * @return positive values favour elo1.
+     */
+    static double logLikelihoodRatio(long wins, long draws, long losses, double elo0, double elo1) {
+        wins++;
+        losses++;
+        long games = wins + draws + losses;
+        double score0 = toScore(elo0);
+        double score1 = toScore(elo1);
+        double score = score(wins, draws, losses);
+        return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance(wins, draws, losses));
+    }
+
+    /**
+     * @param alpha probability to accept elo1 although elo0 is true.
+     * @param beta probability to accept elo0 although elo1 is true.
+     * @return {lower, upper} bound of the log-likelihood ratio: below the lower one elo0 is accepted,
+     * above the upper one elo1.
+     */
+    static double[] bounds(double alpha, double beta) {
+        return new double[] {Math.log(beta / (1 - alpha)), Math.log((1 - beta) / alpha)};
+    }
+}
@@ -0,0 +1,343 @@
+package tournament;
+
+import game.AI;
+import game.Engine;
+import game.Field;
+import game.Mark;
+import game.MonteCarloEngine;
+import game.Position;
+import game.SearchEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static game.Mark.*;
+
+/**
+ * Round robin between {@link Engine}s without the GUI. Every pairing plays games in pairs: both games
+ * start from the same random opening and the engines swap X and O, so neither profits from moving first.
+ * The pairings run in parallel on all cores, every thread plays on a field of its own.
+ *
+ * A pairing stops early once a sequential probability ratio test (SPRT) settles it: one engine is
+ * stronger by at least {@code elo} Elo, or they are equal within {@code elo}. Each direction is tested on
+ * its own with {@code alpha} and {@code beta}. Otherwise it stops after {@code games} games.
+ * At the end every pairing is listed with its Elo difference and 95% confidence interval, and every
+ * engine with its Elo against the field.
+ *
+ * Usage: {@code Tournament [engines=easy,medium,hard,casual] [board=3x3x3] [games=2000] [threads=cores]
+ * [random=1] [elo=20] [alpha=0.05] [beta=0.05] [millis=100]}
+ * <pre>
+ * engines  easy, medium, hard, casual ({@link SearchEngine}) or mcts:playouts ({@link MonteCarloEngine})
+ * random   random moves at the start of every opening
+ * millis   budget per move of the search on boards larger than 3x3
+ * </pre>
+ */
+public final class Tournament {
+
+    private final int rows;
+    private final int columns;
+    private final int winLength;
+    private final int randomMoves;
+    private final List<Pairing> pairings = new ArrayList<>();
+    private final AtomicInteger nextPairing = new AtomicInteger();
+
+    private Tournament(int rows, int columns, int winLength, int randomMoves) {
+        this.rows = rows;
+        this.columns = columns;
+        this.winLength = winLength;
+        this.randomMoves = randomMoves;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String engines = "easy,medium,hard,casual";
+        String board = "3x3x3";
+        int games = 2000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int randomMoves = 1;
+        double elo = 20;
+        double alpha = 0.05;
+        double beta = 0.05;
+        long millis = 100;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Options are name=value: " + arg);
+            }
+            switch (option[0]) {
+                case "engines": engines = option[1]; break;
+                case "board": board = option[1]; break;
+                case "games": games = Integer.parseInt(option[1]); break;
+                case "threads": threads = Integer.parseInt(option[1]); break;
+                case "random": randomMoves = Integer.parseInt(option[1]); break;
+                case "elo": elo = Double.parseDouble(option[1]); break;
+                case "alpha": alpha = Double.parseDouble(option[1]); break;
+                case "beta": beta = Double.parseDouble(option[1]); break;
+                case "millis": millis = Long.parseLong(option[1]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        String[] size = board.split("x");
+        String[] names = engines.split(",");
+        if (names.length < 2) {
+            throw new IllegalArgumentException("A tournament needs at least 2 engines: " + engines);
+        }
+        // The pairings already use all cores.
+        AI.setParallelSearch(false);
+        AI.setSearchBudget(millis, 0);
+
+        Tournament tournament = new Tournament(Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+                Integer.parseInt(size[2]), randomMoves);
+        Engine[] players = new Engine[names.length];
+        for (int i = 0; i < names.length; i++) {
+            players[i] = engine(names[i]);
+        }
+        double[] bounds = Elo.bounds(alpha / 2, beta);
+        for (int i = 0; i < names.length; i++) {
+            for (int j = i + 1; j < names.length; j++) {
+                tournament.pairings.add(new Pairing(names[i], players[i], names[j], players[j], games, elo, bounds));
+            }
+        }
+        long start = System.nanoTime();
+        tournament.run(threads);
+        System.out.printf("%nFinished in %.1f s%n", (System.nanoTime() - start) / 1e9);
+        tournament.printStandings(names);
+    }
+
+    /**
+     * @param name easy, medium, hard, casual or mcts:playouts.
+     */
+    static Engine engine(String name) {
+        switch (name) {
+            case "easy":
+                return new SearchEngine(1);
+            case "medium":
+                return new SearchEngine(2);
+            case "hard":
+                return new SearchEngine(3);
+            case "casual":
+                return new SearchEngine(5);
+            default:
+                if (name.startsWith("mcts:")) {
+                    // One thread per move, the tournament runs games in parallel instead.
+                    return new MonteCarloEngine(Long.parseLong(name.substring(5)), Long.MAX_VALUE, 1);
+                }
+                throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+    }
+
+    private void run(int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(pool.submit(this::playPairs));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Plays pairs of games on one thread, taking turns between the pairings that still need games.
+     */
+    private void playPairs() {
+        Field field = new Field(rows, columns, winLength);
+        int[] opening = new int[randomMoves];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            Pairing pairing = claim();
+            if (pairing == null) {
+                return;
+            }
+            int openingMoves = randomOpening(field, opening, random);
+            Mark first = play(field, opening, openingMoves, pairing.first, pairing.second);
+            Mark second = play(field, opening, openingMoves, pairing.second, pairing.first);
+            // Results of the first engine of the pairing, which played X in the first game and O in the second.
+            int wins = (first == X ? 1 : 0) + (second == O ? 1 : 0);
+            int losses = (first == O ? 1 : 0) + (second == X ? 1 : 0);
+            if (pairing.add(wins, 2 - wins - losses, losses)) {
+                System.out.println(pairing);
+            }
+        }
+    }
+
+    /**
+     * @return a pairing that needs another pair of games, null if all are done.
+     */
+    private Pairing claim() {
+        for (int tried = 0; tried < pairings.size(); tried++) {
+            Pairing pairing = pairings.get(Math.floorMod(nextPairing.getAndIncrement(), pairings.size()));
+            if (pairing.claim()) {
+                return pairing;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of opening moves, fewer than requested if the game would already be over.
+     */
+    private int randomOpening(Field field, int[] opening, ThreadLocalRandom random) {
+        field.clear();
+        int moves = 0;
+        while (moves < opening.length && !field.isGameOver()) {
+            int cell = field.nextFreeCell(0);
+            for (int skip = random.nextInt(field.getCells() - field.numOfMarks()); skip > 0; skip--) {
+                cell = field.nextFreeCell(cell + 1);
+            }
+            field.setMark(cell, field.isXsTurn() ? X : O);
+            opening[moves++] = cell;
+        }
+        // A random move that ends the game isn't an opening.
+        return field.isGameOver() ? moves - 1 : moves;
+    }
+
+    /**
+     * Plays one game after the opening.
+     * @return the winner, {@link Mark#BLANK} for a draw.
+     */
+    private Mark play(Field field, int[] opening, int openingMoves, Engine playerX, Engine playerO) {
+        field.clear();
+        for (int i = 0; i < openingMoves; i++) {
+            field.setMark(opening[i], field.isXsTurn() ? X : O);
+        }
+        while (!field.isGameOver()) {
+            Mark mark = field.isXsTurn() ? X : O;
+            int[] move = (mark == X ? playerX : playerO).move(Position.of(field));
+            field.setMark(move[0], move[1], mark);
+        }
+        return field.getWinner();
+    }
+
+    private void printStandings(String[] names) {
+        System.out.println();
+        for (Pairing pairing : pairings) {
+            System.out.println(pairing);
+        }
+        System.out.println();
+        System.out.printf("%-12s %8s %8s %8s %8s   %s%n", "Engine", "Games", "Wins", "Draws", "Losses",
+                "Elo vs field (95%)");
+        for (String name : names) {
+            long wins = 0;
+            long draws = 0;
+            long losses = 0;
+            for (Pairing pairing : pairings) {
+                long[] results = pairing.results();
+                if (pairing.firstName.equals(name)) {
+                    wins += results[0];
+                    losses += results[2];
+                } else if (pairing.secondName.equals(name)) {
+                    wins += results[2];
+                    losses += results[0];
+                } else {
+                    continue;
+                }
+                draws += results[1];
+            }
+            System.out.printf("%-12s %8d %8d %8d %8d   %s%n", name, wins + draws + losses, wins, draws, losses,
+                    formatElo(wins, draws, losses));
+        }
+    }
+
+    /**
+     * @return Elo difference with its 95% confidence interval, e.g. {@code +120 [+95, +151]}.
+     */
+    static String formatElo(long wins, long draws, long losses) {
+        if (wins + draws + losses == 0) {
+            return "-";
+        }
+        double[] interval = Elo.interval(wins, draws, losses);
+        return formatElo(Elo.fromScore(Elo.score(wins, draws, losses))) + " [" + formatElo(interval[0]) + ", "
+                + formatElo(interval[1]) + "]";
+    }
+
+    private static String formatElo(double elo) {
+        return Double.isInfinite(elo) ? (elo > 0 ? "+inf" : "-inf") : String.format(Locale.ROOT, "%+.0f", elo + 0.0);
+    }
+
+    /**
+     * Games of two engines against each other, shared by the threads that play them.
+     */
+    private static final class Pairing {
+
+        final String firstName;
+        final Engine first;
+        final String secondName;
+        final Engine second;
+        private final int maxGames;
+        private final double elo;
+        private final double[] bounds;
+
+        private int startedGames;
+        private long wins;
+        private long draws;
+        private long losses;
+        private String verdict;
+
+        Pairing(String firstName, Engine first, String secondName, Engine second, int maxGames, double elo,
+                double[] bounds) {
+            this.firstName = firstName;
+            this.first = first;
+            this.secondName = secondName;
+            this.second = second;
+            this.maxGames = maxGames;
+            this.elo = elo;
+            this.bounds = bounds;
+        }
+
+        /**
+         * @return true if another pair of games is needed, which is then counted as started.
+         */
+        synchronized boolean claim() {
+            if (verdict != null || startedGames >= maxGames) {
+                return false;
+            }
+            startedGames += 2;
+            return true;
+        }
+
+        /**
+         * Adds the results of the first engine and runs the SPRT.
+         * @return true if the pairing was decided by these games.
+         */
+        synchronized boolean add(int wins, int draws, int losses) {
+            this.wins += wins;
+            this.draws += draws;
+            this.losses += losses;
+            if (verdict != null) {
+                // Games that were already running when the pairing was decided.
+                return false;
+            }
+            double stronger = Elo.logLikelihoodRatio(this.wins, this.draws, this.losses, 0, elo);
+            double weaker = Elo.logLikelihoodRatio(this.wins, this.draws, this.losses, 0, -elo);
+            if (stronger >= bounds[1]) {
+                verdict = firstName + " stronger";
+            } else if (weaker >= bounds[1]) {
+                verdict = secondName + " stronger";
+            } else if (stronger <= bounds[0] && weaker <= bounds[0]) {
+                verdict = "equal within " + String.format(Locale.ROOT, "%.0f", elo) + " Elo";
+            } else if (this.wins + this.draws + this.losses >= maxGames) {
+                verdict = "undecided after " + maxGames + " games";
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        synchronized long[] results() {
+            return new long[] {wins, draws, losses};
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format(Locale.ROOT, "%s vs %s: +%d =%d -%d, Elo %s, %s", firstName, secondName, wins, draws,
+                    losses, formatElo(wins, draws, losses), verdict == null ? "running" : verdict);
+        }
+    }
+}